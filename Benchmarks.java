@@ -0,0 +1,473 @@
+import greenfoot.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * A headless benchmark suite for the engine's hot paths.
+ * <p>
+ * Each benchmark is warmed up, then run for several timed iterations. The
+ * average time and the average number of bytes allocated (by all threads) are
+ * reported per operation, so that regressions in these paths can be caught.
+ * <p>
+ * Run this outside of Greenfoot, from the scenario directory so that the
+ * images directory can be found, with greenfoot.jar on the classpath:
+ * <pre>
+ * java -cp .:greenfoot.jar Benchmarks [name filter...] [-csv file]
+ * </pre>
+ * Only benchmarks whose names contain one of the given filters are run. Worlds
+ * are saved to a temporary directory that is deleted afterwards, so existing
+ * saves are never touched. Before the WorldData benchmarks run, parallel world
+ * generation is checked to generate exactly the same world as serial
+ * generation, and the suite fails if not.
+ *
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class Benchmarks {
+    /**
+     * A single operation to be benchmarked.
+     *
+     * @author Andrew Wang
+     * @version June 2024
+     */
+    @FunctionalInterface
+    private interface Operation {
+        public void run() throws Exception;
+    }
+
+    /**
+     * The results of running a benchmark.
+     *
+     * @author Andrew Wang
+     * @version June 2024
+     */
+    private static class Result {
+        public final String name;
+        public final long ops;
+        public final double nanosPerOp;
+        public final double bytesPerOp;
+
+        public Result(String name, long ops, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.ops = ops;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final int ITERATIONS = 5;
+    private static final long SAVE_SEED = 1234567890L;
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final List<String> filters;
+    private final List<Result> results;
+
+    /**
+     * Create a new benchmark suite that only runs benchmarks matching the
+     * given filters.
+     *
+     * @param filters the name filters, or an empty list to run everything
+     */
+    public Benchmarks(List<String> filters) {
+        this.filters = filters;
+        results = new ArrayList<>();
+    }
+
+    /**
+     * Run the benchmark suite.
+     *
+     * @param args name filters, optionally followed by {@code -csv <file>}
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        List<String> filters = new ArrayList<>();
+        String csvFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-csv") && i + 1 < args.length) {
+                csvFile = args[++i];
+            } else {
+                filters.add(args[i]);
+            }
+        }
+
+        // Worlds are saved to a temporary directory, so that the benchmarks
+        // never load or delete the player's own saves
+        File saves = Files.createTempDirectory("benchmark-saves").toFile();
+        WorldData.setSaveDirectory(saves);
+
+        Benchmarks benchmarks = new Benchmarks(filters);
+        try {
+            benchmarks.runAll();
+        } finally {
+            WorldData.waitForSaves();
+            deleteRecursively(saves);
+        }
+        if (csvFile != null) {
+            benchmarks.writeCsv(csvFile);
+        }
+        // Background generation and rendering threads are daemons
+        System.exit(0);
+    }
+
+    /**
+     * Delete a file, or a directory and everything in it.
+     *
+     * @param file the file or directory to delete
+     */
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Run every benchmark matching the filters.
+     */
+    public void runAll() throws Exception {
+        System.out.printf("%-44s %12s %14s %14s%n", "Benchmark", "ops", "ns/op", "B/op");
+        if (matches("SprackView")) {
+            SprackView.loadAll();
+        }
+        benchmarkSprackView();
+        benchmarkRenderSprites();
+        benchmarkPhysics();
+        benchmarkCollision();
+        benchmarkWorldData();
+    }
+
+    private void benchmarkSprackView() throws Exception {
+        if (!matches("SprackView")) return;
+        // Split a sheet into layers the same way SprackView does
+        final GreenfootImage sheet = new GreenfootImage("tree_oak_trunk.png");
+        final int layerCount = 29;
+        final int layerWidth = sheet.getWidth();
+        final int layerHeight = sheet.getHeight() / layerCount;
+        final GreenfootImage[] layers = new GreenfootImage[layerCount];
+        for (int i = 0; i < layerCount; i++) {
+            layers[i] = new GreenfootImage(layerWidth, layerHeight);
+            layers[i].drawImage(sheet, 0, -layerHeight * (layerCount - 1 - i));
+        }
+        final int[] angle = {0};
+        run("SprackView.createCacheEntry", () -> {
+            SprackView.createCacheEntry(angle[0]++ % 360, layers, layerWidth, layerHeight);
+        });
+
+        final SprackView view = SprackView.getView("tree_oak_trunk");
+        run("SprackView.getTransformedImage (same zoom)", () -> {
+            view.getTransformedImage(angle[0]++ % 360, 1.0);
+        });
+        final double[] zoom = {0.6};
+        run("SprackView.getTransformedImage (zooming)", () -> {
+            view.getTransformedImage(0, zoom[0]);
+            zoom[0] = zoom[0] >= 2 ? 0.6 : zoom[0] + 0.01;
+        });
+    }
+
+    private void benchmarkRenderSprites() throws Exception {
+        if (!matches("PixelWorld.renderSprites")) return;
+        if (!SprackView.loaded()) {
+            SprackView.loadAll();
+        }
+        for (int count : new int[] {100, 1000}) {
+            final SprackWorld world = new SprackWorld(false, SAVE_SEED);
+            Random random = new Random(0);
+            for (int i = 0; i < count; i++) {
+                Rock rock = new Rock(new FeatureData(i));
+                world.addWorldObject(rock, Camera.getX() + random.nextInt(256) - 128, 0,
+                                     Camera.getZ() + random.nextInt(196) - 98);
+            }
+            world.applyAdditions();
+            run("PixelWorld.renderSprites (+" + count + " spracks)", world::renderSprites);
+        }
+        // Ground sprites are drawn from the layer cache while the camera is still
+        final SprackWorld world = new SprackWorld(false, SAVE_SEED);
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++) {
+            world.addWorldObject(new Dirt(random.nextInt(5), random.nextInt(360)),
+                                 Camera.getX() + random.nextInt(256) - 128, 0,
+                                 Camera.getZ() + random.nextInt(196) - 98);
+        }
+        world.applyAdditions();
+        run("PixelWorld.renderSprites (+500 dirt)", world::renderSprites);
+        WorldData.deleteSave(SAVE_SEED);
+    }
+
+    private void benchmarkPhysics() throws Exception {
+        if (!matches("PhysicsController.update")) return;
+        final BenchmarkObject object = new BenchmarkObject(null);
+        final PhysicsController physics = new PhysicsController(object);
+        physics.setAlwaysTurnTowardsMovement(true);
+        final Vector2 accel = new Vector2(0.3, 0.4);
+        run("PhysicsController.update", () -> {
+            physics.accelerate(accel);
+            physics.update();
+        });
+    }
+
+    private void benchmarkCollision() throws Exception {
+        if (!matches("CollisionSystem.update")) return;
+        if (!SprackView.loaded()) {
+            SprackView.loadAll();
+        }
+        final SprackWorld world = new SprackWorld(false, SAVE_SEED);
+        for (int count : new int[] {10, 100, 1000}) {
+            final CollisionSystem system = new CollisionSystem();
+            final List<BenchmarkObject> objects = new ArrayList<>();
+            Random random = new Random(0);
+            for (int i = 0; i < count; i++) {
+                BenchmarkObject object = new BenchmarkObject(world);
+                objects.add(object);
+                system.add(new CollisionController(object, 10, 0.5, 0));
+            }
+            // Scatter every object again each operation so there is always work
+            run("CollisionSystem.update (" + count + " controllers)", () -> {
+                for (BenchmarkObject object : objects) {
+                    object.setWorldPos(random.nextDouble() * 40 * Math.sqrt(count), 0,
+                                       random.nextDouble() * 40 * Math.sqrt(count));
+                }
+                system.update();
+            });
+        }
+        WorldData.deleteSave(SAVE_SEED);
+    }
+
+    private void benchmarkWorldData() throws Exception {
+        if (!matches("WorldData")) return;
+        verifyParallelGeneration();
+        for (boolean parallel : new boolean[] {false, true}) {
+            run("WorldData.generateWorld (new, " + (parallel ? "parallel" : "serial") + ")", () -> {
+                Cluster.clearClusters();
+                WorldData world = new WorldData(SAVE_SEED);
+                world.generateWorld(parallel);
+                while (world.pollLoadedChunk() != null);
+            });
+        }
+        Cluster.clearClusters();
+        final WorldData data = new WorldData(SAVE_SEED);
+        data.generateWorld();
+        final int[] location = {0};
+        run("WorldData.generateWorld", () -> {
+            // Teleporting far away regenerates the whole world around the player
+            location[0] += 1000;
+            data.teleportPlayer(location[0], 0);
+            while (data.pollLoadedChunk() != null);
+            while (data.pollUnloadedChunk() != null);
+        });
+        // Only the main thread's share of streaming is measured here, chunks
+        // still rolling on the generation thread are picked up next time
+        run("WorldData.updatePlayerLocation", () -> {
+            location[0]++;
+            data.updatePlayerLocation(location[0], 0);
+            while (data.pollLoadedChunk() != null);
+            while (data.pollUnloadedChunk() != null);
+        });
+
+        run("WorldData.saveData (snapshot)", data::saveData);
+        WorldData.waitForSaves();
+        run("WorldData.saveData (written)", () -> {
+            data.saveData();
+            WorldData.waitForSaves();
+        });
+        run("WorldData(long) load", () -> new WorldData(SAVE_SEED));
+        WorldData.deleteSave(SAVE_SEED);
+        WorldData.waitForSaves();
+    }
+
+    /**
+     * Check that generating worlds in parallel gives exactly the same chunks,
+     * in the same order, as generating them serially.
+     *
+     * @throws IllegalStateException if any world differs
+     */
+    private static void verifyParallelGeneration() {
+        long[] seeds = {1, 42, -7, 1L << 40, SAVE_SEED};
+        for (long seed : seeds) {
+            List<String> serial = describeGeneration(seed, false);
+            List<String> parallel = describeGeneration(seed, true);
+            if (!serial.equals(parallel)) {
+                throw new IllegalStateException("Parallel generation differs from serial for seed " + seed);
+            }
+        }
+        System.out.println("Parallel generation matches serial for " + seeds.length + " seeds");
+    }
+
+    /**
+     * Generate a new world and describe every chunk it queues as loaded.
+     *
+     * @param seed the seed of the world, which must not have a save
+     * @param parallel whether to generate in parallel
+     * @return a description of each loaded chunk, in the order they were loaded
+     */
+    private static List<String> describeGeneration(long seed, boolean parallel) {
+        Cluster.clearClusters();
+        WorldData data = new WorldData(seed);
+        data.generateWorld(parallel);
+        List<String> chunks = new ArrayList<>();
+        Chunk chunk;
+        while ((chunk = data.pollLoadedChunk()) != null) {
+            TreeMap<Long, String> features = new TreeMap<>();
+            chunk.getFeatures().forEach((key, feature) -> {
+                features.put(key, feature.getClass().getName() + "#" + feature.getData().id);
+            });
+            chunks.add(chunk.x + "," + chunk.y + " " + features
+                       + " " + Arrays.toString(Cluster.copyInfluence(chunk.x, chunk.y)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Check whether a benchmark, or a group of benchmarks, should be run.
+     *
+     * @param name the name of the benchmark or group
+     * @return whether the name matches any filter, or there are no filters
+     */
+    private boolean matches(String name) {
+        if (filters.isEmpty()) return true;
+        for (String filter : filters) {
+            if (name.contains(filter) || filter.contains(name)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Warm up and measure an operation, then print and record its results.
+     *
+     * @param name the name of the benchmark
+     * @param operation the operation to measure
+     */
+    private void run(String name, Operation operation) throws Exception {
+        // Warm up so that the measured code is compiled
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            operation.run();
+        }
+
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long startBytes = getAllocatedBytes();
+            long start = System.nanoTime();
+            long end = start + ITERATION_NANOS;
+            long now = start;
+            while (now < end) {
+                operation.run();
+                ops++;
+                now = System.nanoTime();
+            }
+            nanos += now - start;
+            bytes += getAllocatedBytes() - startBytes;
+        }
+
+        Result result = new Result(name, ops, (double) nanos / ops, (double) bytes / ops);
+        results.add(result);
+        System.out.printf("%-44s %12d %14.1f %14.1f%n", name, ops, result.nanosPerOp, result.bytesPerOp);
+    }
+
+    /**
+     * Get the total number of bytes allocated by all live threads so far.
+     *
+     * @return the number of bytes, or 0 if this is not supported
+     */
+    private static long getAllocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        long total = 0;
+        for (long bytes : sunThreads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // Threads that have died since their ids were listed report -1
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Write the results of all benchmarks that have been run to a CSV file.
+     *
+     * @param fileName the name of the file to write
+     */
+    public void writeCsv(String fileName) {
+        try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+            out.println("benchmark,ops,ns_per_op,bytes_per_op");
+            for (Result result : results) {
+                out.println("\"" + result.name + "\"," + result.ops + ","
+                            + result.nanosPerOp + "," + result.bytesPerOp);
+            }
+        } catch (IOException e) {
+            System.out.println(e);
+        }
+    }
+
+    /**
+     * A bare WorldObject that is not rendered, used as the client of
+     * controllers being benchmarked.
+     *
+     * @author Andrew Wang
+     * @version June 2024
+     */
+    private static class BenchmarkObject implements WorldObject {
+        private final SprackWorld world;
+        private double x;
+        private double y;
+        private double z;
+        private double rotation;
+
+        public BenchmarkObject(SprackWorld world) {
+            this.world = world;
+        }
+
+        public Vector3 getWorldPos() {
+            return new Vector3(x, y, z);
+        }
+
+        public double getWorldX() {
+            return x;
+        }
+
+        public double getWorldY() {
+            return y;
+        }
+
+        public double getWorldZ() {
+            return z;
+        }
+
+        public void setWorldPos(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        public void setWorldPos(Vector3 position) {
+            setWorldPos(position.x, position.y, position.z);
+        }
+
+        public double getWorldRotation() {
+            return rotation;
+        }
+
+        public void setWorldRotation(double rotation) {
+            this.rotation = rotation;
+        }
+
+        public SprackWorld getWorld() {
+            return world;
+        }
+    }
+}
@@ -17,6 +17,8 @@ public class Camera {
     private static double closeness;
     private static Timer shakeTimer;
     private static int shakeStrength;
+    // The transform of the current state, or null if the state has changed
+    private static CameraTransform transform;
 
     /**
      * Set the factor by which the {@link #targetPosition} and
@@ -67,6 +69,7 @@ public class Camera {
             Camera.position = Camera.centralPosition;
             shakeTimer = null;
         }
+        transform = null;
     }
 
     /**
@@ -84,6 +87,7 @@ public class Camera {
             diff += 360.0;
         }
         Camera.rotation = Vector2.normalizeAngle(Camera.rotation + diff * closeness);
+        transform = null;
     }
 
     /**
@@ -97,6 +101,7 @@ public class Camera {
             throw new IllegalArgumentException("Zoom factor must not be negative");
         }
         Camera.zoom = zoom;
+        transform = null;
     }
 
     /**
@@ -112,6 +117,7 @@ public class Camera {
         Camera.centralPosition = new Vector3(x, y, z);
         Camera.rotation = Vector2.normalizeAngle(rotation);
         setZoom(zoom);
+        transform = null;
     }
 
     /**
@@ -178,6 +184,22 @@ public class Camera {
         return rotation;
     }
 
+    /**
+     * Return the transform between world and screen positions for the current
+     * state of the camera.
+     * <p>
+     * The transform is only created again after the camera has moved, turned,
+     * or zoomed, so that all sprites projected in a frame share it.
+     *
+     * @return the current camera transform
+     */
+    public static CameraTransform getTransform() {
+        if (transform == null) {
+            transform = new CameraTransform(position.x, position.y, position.z, rotation, zoom);
+        }
+        return transform;
+    }
+
     /**
      * Return the zoom factor of the camera.
      *
@@ -0,0 +1,169 @@
+/**
+ * A snapshot of the {@link Camera} used to convert between world positions
+ * and screen positions.
+ * <p>
+ * The rotation of the camera is turned into a cosine and sine once, when the
+ * snapshot is taken, instead of once for every sprite that is projected. The
+ * camera keeps its current snapshot until it moves, turns, or zooms, so every
+ * conversion in a frame shares the same one (see {@link Camera#getTransform}).
+ * <p>
+ * World positions are projected by moving them relative to the camera,
+ * scaling them by the zoom factor, and rotating them by the opposite of the
+ * camera rotation around the center of the canvas. The height of a position is
+ * then subtracted from its screen y position. Screen positions are converted
+ * back to world positions on the ground plane at the camera's height.
+ *
+ * @author Martin Baldwin
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class CameraTransform {
+    private final double x;
+    private final double y;
+    private final double z;
+    private final double rotation;
+    private final double zoom;
+    // The cosine and sine of the screen rotation, the opposite of the camera
+    // rotation
+    private final double cos;
+    private final double sin;
+
+    /**
+     * Create a new transform for a camera with the given state.
+     *
+     * @param x the x position of the camera
+     * @param y the y position of the camera
+     * @param z the z position of the camera
+     * @param rotation the rotation angle of the camera, in degrees
+     * @param zoom the zoom factor of the camera
+     */
+    public CameraTransform(double x, double y, double z, double rotation, double zoom) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.rotation = rotation;
+        this.zoom = zoom;
+        double screenRad = Math.toRadians(-rotation);
+        cos = Math.cos(screenRad);
+        sin = Math.sin(screenRad);
+    }
+
+    /**
+     * Get the screen x position of a world position.
+     *
+     * @param worldX the x position in the world
+     * @param worldZ the z position in the world
+     * @param width the width of the canvas
+     * @return the x position on the canvas
+     */
+    public double getScreenX(double worldX, double worldZ, int width) {
+        double offsetX = (worldX - x) * zoom;
+        double offsetZ = (worldZ - z) * zoom;
+        return width / 2 + offsetX * cos - offsetZ * sin;
+    }
+
+    /**
+     * Get the screen y position of a world position.
+     *
+     * @param worldX the x position in the world
+     * @param worldY the y position (height) in the world
+     * @param worldZ the z position in the world
+     * @param height the height of the canvas
+     * @return the y position on the canvas
+     */
+    public double getScreenY(double worldX, double worldY, double worldZ, int height) {
+        return getGroundScreenY(worldX, worldZ, height) - (worldY - y) * zoom;
+    }
+
+    /**
+     * Get the screen y position of a world position at the camera's height,
+     * which orders sprites from back to front.
+     *
+     * @param worldX the x position in the world
+     * @param worldZ the z position in the world
+     * @param height the height of the canvas
+     * @return the y position on the canvas, ignoring height
+     */
+    public double getGroundScreenY(double worldX, double worldZ, int height) {
+        double offsetX = (worldX - x) * zoom;
+        double offsetZ = (worldZ - z) * zoom;
+        return height / 2 + offsetX * sin + offsetZ * cos;
+    }
+
+    /**
+     * Get the world x position on the ground plane at the camera's height
+     * that is shown at a screen position.
+     *
+     * @param screenX the x position on the canvas
+     * @param screenY the y position on the canvas
+     * @param width the width of the canvas
+     * @param height the height of the canvas
+     * @return the x position in the world
+     */
+    public double getWorldX(double screenX, double screenY, int width, int height) {
+        double offsetX = (screenX - width / 2.0) / zoom;
+        double offsetY = (screenY - height / 2.0) / zoom;
+        return x + offsetX * cos + offsetY * sin;
+    }
+
+    /**
+     * Get the world z position on the ground plane at the camera's height
+     * that is shown at a screen position.
+     *
+     * @param screenX the x position on the canvas
+     * @param screenY the y position on the canvas
+     * @param width the width of the canvas
+     * @param height the height of the canvas
+     * @return the z position in the world
+     */
+    public double getWorldZ(double screenX, double screenY, int width, int height) {
+        double offsetX = (screenX - width / 2.0) / zoom;
+        double offsetY = (screenY - height / 2.0) / zoom;
+        return z - offsetX * sin + offsetY * cos;
+    }
+
+    /**
+     * Get the x position of the camera.
+     *
+     * @return the x position of the camera, in world coordinates
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Get the y position of the camera.
+     *
+     * @return the y position of the camera, in world coordinates
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Get the z position of the camera.
+     *
+     * @return the z position of the camera, in world coordinates
+     */
+    public double getZ() {
+        return z;
+    }
+
+    /**
+     * Get the rotation of the camera.
+     *
+     * @return the rotation angle of the camera, in degrees
+     */
+    public double getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the zoom factor of the camera.
+     *
+     * @return the zoom factor of the camera
+     */
+    public double getZoom() {
+        return zoom;
+    }
+}
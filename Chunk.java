@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed-size square of world grid tiles that is loaded and unloaded as a
+ * unit by {@link WorldData}.
+ * <p>
+ * A chunk holds whatever was generated for its tiles when it was loaded:
+ * either the {@link Feature}s on its tiles, or the {@link Cluster} centers
+ * placed on its tiles, depending on which set of chunks it belongs to.
+ * <p>
+ * Feature chunks are rolled on the world generation thread, which fills in
+ * the chunk's {@link Placement}s. The features themselves are only created
+ * once the chunk is handed back to the main thread and marked as generated.
+ *
+ * @author Lucas Fu
+ * @version June 2024
+ */
+public class Chunk {
+    /**
+     * The type and data of a feature rolled for a single tile, waiting to be
+     * created on the main thread.
+     *
+     * @author Lucas Fu
+     * @version June 2024
+     */
+    public static class Placement {
+        public final Feature.Type type;
+        public final FeatureData data;
+
+        public Placement(Feature.Type type, FeatureData data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /** The side length of a chunk, in grid tiles. */
+    public static final int SIZE = 4;
+
+    /** The x coordinate of this chunk, in chunk coordinates. */
+    public final int x;
+    /** The y coordinate of this chunk, in chunk coordinates. */
+    public final int y;
+
+    private final Long2ObjectMap<Feature> features;
+    private final Map<Vector2, Cluster> clusters;
+    private final List<Placement> placements;
+    private boolean generated;
+
+    /**
+     * Create a new empty chunk at the given chunk coordinates.
+     *
+     * @param x the x coordinate, in chunk coordinates
+     * @param y the y coordinate, in chunk coordinates
+     */
+    public Chunk(int x, int y) {
+        this.x = x;
+        this.y = y;
+        features = new Long2ObjectMap<>();
+        clusters = new LinkedHashMap<>();
+        placements = new ArrayList<>();
+        generated = false;
+    }
+
+    /**
+     * Get the chunk coordinate containing the given grid coordinate.
+     *
+     * @param gridCoord the grid coordinate, which may contain decimals
+     * @return the chunk coordinate
+     */
+    public static int toChunk(double gridCoord) {
+        return Math.floorDiv((int) Math.floor(gridCoord), SIZE);
+    }
+
+    /**
+     * Pack a pair of chunk coordinates into a single key, the same way
+     * {@link TileKey} packs grid coordinates.
+     *
+     * @param x the chunk x coordinate
+     * @param y the chunk y coordinate
+     * @return the packed key
+     */
+    public static long key(int x, int y) {
+        return TileKey.of(x, y);
+    }
+
+    /**
+     * Get the key of the chunk containing the given grid position.
+     *
+     * @param gridPos the grid position, which may contain decimals
+     * @return the packed key of the chunk containing the position
+     */
+    public static long keyOf(Vector2 gridPos) {
+        return key(toChunk(gridPos.x), toChunk(gridPos.y));
+    }
+
+    /**
+     * Get the packed key of this chunk.
+     *
+     * @return the key
+     */
+    public long key() {
+        return key(x, y);
+    }
+
+    /**
+     * Get the features generated in this chunk, mapped by the
+     * {@link TileKey} of their grid coordinates.
+     *
+     * @return the features in this chunk
+     */
+    public Long2ObjectMap<Feature> getFeatures() {
+        return features;
+    }
+
+    /**
+     * Get the cluster centers placed in this chunk, mapped by their grid
+     * coordinates.
+     *
+     * @return the cluster centers in this chunk
+     */
+    public Map<Vector2, Cluster> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Get the features rolled for this chunk that have not yet been created.
+     *
+     * @return the rolled feature placements
+     */
+    public List<Placement> getPlacements() {
+        return placements;
+    }
+
+    /**
+     * Mark this chunk as generated, meaning its features have been created
+     * and it may be added to the world.
+     */
+    public void markGenerated() {
+        generated = true;
+        placements.clear();
+    }
+
+    /**
+     * Check if this chunk's features have been created.
+     *
+     * @return whether this chunk has been generated
+     */
+    public boolean isGenerated() {
+        return generated;
+    }
+}
@@ -1,4 +1,4 @@
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 
@@ -13,6 +13,16 @@ import java.util.ArrayList;
  * <li>The density of the cluster</li>
  * <li>The maximum radius of the cluster (actually a square)</li>
  * </ul>
+ * <p>
+ * The centers of each cluster are kept in buckets of one {@link Chunk} each,
+ * so adding or removing a center only touches its own bucket, and finding
+ * the centers near a tile only looks at the buckets around it.
+ * <p>
+ * Every cluster center adds to the spawn rate of its feature on each tile
+ * within its radius, more so the closer the tile is. These additions are kept
+ * in an influence field that is updated whenever a center is added or
+ * removed, so the spawn rates of a tile are read from the field instead of
+ * being measured against every center.
  * @author Lucas Fu
  * @author Andrew Wang
  * @version May 2024
@@ -28,7 +38,19 @@ public enum Cluster {
     public final int density;
     public final int maxRadius;
 
-    private static HashMap<Class<? extends Feature>, List<Vector2>> clusterCenters = new HashMap<>();
+    // The centers of this cluster, in buckets mapped by chunk key
+    private final Long2ObjectMap<List<Vector2>> centers = new Long2ObjectMap<>();
+
+    // The spawn rate added to each tile by nearby centers, in one array per
+    // chunk mapped by chunk key. Each array holds length() weights per tile,
+    // in row-major tile order, followed by the number of centers reaching the
+    // chunk, so that it can be dropped once none do.
+    private static Long2ObjectMap<int[]> influence = new Long2ObjectMap<>();
+    private static final int TILES = Chunk.SIZE * Chunk.SIZE;
+    private static final int COUNT = values().length;
+
+    // The index of the cluster of each feature type, or -1 if it has none
+    private static final int[] typeIndices = new int[Feature.Type.length()];
 
     private Cluster(Class<? extends Feature> cls, int spawnRate, int density, int maxRadius) {
         this.cls = cls;
@@ -38,8 +60,13 @@ public enum Cluster {
     }
 
     static {
-        for (Cluster cluster : values()) {
-            clusterCenters.put(cluster.cls, new ArrayList<>());
+        Arrays.fill(typeIndices, -1);
+        for (Feature.Type type : Feature.Type.values()) {
+            for (Cluster cluster : values()) {
+                if (cluster.cls == type.cls) {
+                    typeIndices[type.ordinal()] = cluster.ordinal();
+                }
+            }
         }
     }
 
@@ -49,34 +76,129 @@ public enum Cluster {
      * @return the number of different types of features
      */
     public static int length() {
-        return values().length;
+        return COUNT;
     }
 
     public static Cluster getFromFeature(Feature.Type type) {
         return valueOf(type.name());
     }
 
-    public static List<Vector2> getCenter(Class<? extends Feature> cls) {
-        return clusterCenters.get(cls);
+    /**
+     * Get the index of the cluster of a feature type, which is where its
+     * weight is kept in the arrays returned by {@link #copyInfluence}.
+     *
+     * @param type the feature type
+     * @return the index of the cluster, or -1 if the type has no cluster
+     */
+    public static int indexOf(Feature.Type type) {
+        return typeIndices[type.ordinal()];
+    }
+
+    /**
+     * Get a copy of the spawn rate added by cluster centers to every tile of a
+     * chunk, which can be safely read from another thread while the centers
+     * keep changing.
+     * <p>
+     * The weight of cluster {@code c} on the tile at row {@code i} and column
+     * {@code j} of the chunk is at index
+     * {@code (i * Chunk.SIZE + j) * Cluster.length() + c}.
+     *
+     * @param chunkX the x coordinate of the chunk, in chunk coordinates
+     * @param chunkY the y coordinate of the chunk, in chunk coordinates
+     * @return a copy of the weights, or null if no center reaches the chunk
+     */
+    public static int[] copyInfluence(int chunkX, int chunkY) {
+        int[] weights = influence.get(Chunk.key(chunkX, chunkY));
+        return weights == null ? null : Arrays.copyOf(weights, TILES * COUNT);
+    }
+
+    /**
+     * Add or subtract the influence of a center on every tile within its
+     * radius.
+     *
+     * @param cluster the cluster of the center
+     * @param center the center
+     * @param sign 1 to add the center, or -1 to subtract it
+     */
+    private static void applyInfluence(Cluster cluster, Vector2 center, int sign) {
+        int r = cluster.maxRadius;
+        int minX = (int) Math.floor(center.x) - r;
+        int maxX = (int) Math.ceil(center.x) + r;
+        int minY = (int) Math.floor(center.y) - r;
+        int maxY = (int) Math.ceil(center.y) + r;
+        for (int chunkY = Chunk.toChunk(minY); chunkY <= Chunk.toChunk(maxY); chunkY++) {
+            for (int chunkX = Chunk.toChunk(minX); chunkX <= Chunk.toChunk(maxX); chunkX++) {
+                long key = Chunk.key(chunkX, chunkY);
+                int[] weights = influence.get(key);
+                if (weights == null) {
+                    weights = new int[TILES * COUNT + 1];
+                    influence.put(key, weights);
+                }
+                int startX = Math.max(minX, chunkX * Chunk.SIZE);
+                int endX = Math.min(maxX, chunkX * Chunk.SIZE + Chunk.SIZE - 1);
+                int startY = Math.max(minY, chunkY * Chunk.SIZE);
+                int endY = Math.min(maxY, chunkY * Chunk.SIZE + Chunk.SIZE - 1);
+                for (int y = startY; y <= endY; y++) {
+                    for (int x = startX; x <= endX; x++) {
+                        double dx = center.x - x;
+                        double dy = center.y - y;
+                        // A multiplier that decreases the spawn rate of the
+                        // feature based on the distance from the center
+                        int closenessMult = Math.max(r - (int) Math.sqrt(dx * dx + dy * dy), 0);
+                        int tile = (y - chunkY * Chunk.SIZE) * Chunk.SIZE + (x - chunkX * Chunk.SIZE);
+                        weights[tile * COUNT + cluster.ordinal()] += sign * closenessMult * cluster.density;
+                    }
+                }
+                weights[TILES * COUNT] += sign;
+                if (weights[TILES * COUNT] == 0) {
+                    influence.remove(key);
+                }
+            }
+        }
     }
 
     public static void addCenter(Class<? extends Feature> cls, Vector2 center) {
-        clusterCenters.get(cls).add(center);
+        Cluster cluster = fromClass(cls);
+        long key = Chunk.keyOf(center);
+        List<Vector2> bucket = cluster.centers.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>(2);
+            cluster.centers.put(key, bucket);
+        }
+        bucket.add(center);
+        applyInfluence(cluster, center, 1);
     }
 
     public static void removeCenter(Class<? extends Feature> cls, Vector2 center) {
-        clusterCenters.get(cls).remove(center);
+        fromClass(cls).remove(center);
     }
 
-    public static void removeCenter(Vector2 center) {
-        for (List<Vector2> centers : clusterCenters.values()) {
-            centers.remove(center);
+    /**
+     * Remove a center of this cluster, if it has one at the given position.
+     *
+     * @param center the position of the center
+     */
+    private void remove(Vector2 center) {
+        long key = Chunk.keyOf(center);
+        List<Vector2> bucket = centers.get(key);
+        if (bucket == null || !bucket.remove(center)) return;
+        if (bucket.isEmpty()) {
+            centers.remove(key);
         }
+        applyInfluence(this, center, -1);
     }
 
     public static void clearClusters() {
-        for(List<Vector2> l : clusterCenters.values()) {
-            l.clear();
+        for (Cluster cluster : values()) {
+            cluster.centers.clear();
+        }
+        influence.clear();
+    }
+
+    private static Cluster fromClass(Class<? extends Feature> cls) {
+        for (Cluster cluster : values()) {
+            if (cluster.cls == cls) return cluster;
         }
+        throw new IllegalArgumentException("No cluster of " + cls.getName());
     }
 }
@@ -6,6 +6,7 @@
  * with the client object, and add it to the world in the
  * {@link Sprite#addedToWorld(PixelWorld)} method, using the
  * {@link SprackWorld#addCollisionController(CollisionController)} method.
+ * Controllers are automatically discarded once their client leaves the world.
  *
  * @author Andrew Wang
  * @version June 2024
@@ -63,6 +64,15 @@ public class CollisionController {
         return client.getWorldPos();
     }
 
+    /**
+     * Get the x position of this controller's client in the world.
+     *
+     * @return the world x position
+     */
+    public double getWorldX() {
+        return client.getWorldX();
+    }
+
     /**
      * Set the world position of this controller's client.
      *
@@ -73,28 +83,82 @@ public class CollisionController {
     }
 
     /**
-     * Update the controller, checking for collisions and pushing out the client
-     * object if necessary.
+     * Get the radius of the sphere in which this controller collides.
+     *
+     * @return the collision radius
      */
-    public void update() {
-        if (getWorld() == null) {
-            removed = true;
-            return;
-        }
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Get the factor by which this controller pushes out other objects.
+     *
+     * @return the pushout factor
+     */
+    public double getPushoutFactor() {
+        return pushoutFactor;
+    }
+
+    /**
+     * Get the amount this controller's client resists being pushed out by
+     * other objects.
+     *
+     * @return the resistance
+     */
+    public double getResistance() {
+        return resistance;
+    }
+
+    /**
+     * Resolve a collision between this controller and another controller,
+     * pushing both clients out of each other if their spheres overlap.
+     * <p>
+     * Each client is pushed out by the other's pushoutFactor, reduced by its
+     * own resistance. This should be called once per overlapping pair per
+     * frame, see {@link CollisionSystem}.
+     *
+     * @param other the other controller
+     */
+    public void resolve(CollisionController other) {
+        // Neither client can move, skip the narrow phase entirely
+        if (resistance >= 1 && other.resistance >= 1) return;
 
-        for (CollisionController other : getWorld().getCollisionControllers()) {
-            if (other == this) continue;
-            final int radSum = radius + other.radius;
-            if (getWorldPos().distanceTo(other.getWorldPos()) > radSum) continue;
-            Vector3 delta = getWorldPos().subtract(other.getWorldPos());
-            try {
-                delta = delta.scaleToMagnitude(radSum - delta.magnitude());
-            } catch (ArithmeticException e) {
-                delta = delta.setX(1).scaleToMagnitude(radSum - delta.magnitude());
-            }
-            final double mult = other.pushoutFactor * (1 - resistance);
-            setWorldPos(getWorldPos().add(delta.multiply(mult)));
+        final double x = client.getWorldX(), y = client.getWorldY(), z = client.getWorldZ();
+        final double otherX = other.client.getWorldX();
+        final double otherY = other.client.getWorldY();
+        final double otherZ = other.client.getWorldZ();
+        final int radSum = radius + other.radius;
+        final double dx = x - otherX;
+        final double dy = y - otherY;
+        final double dz = z - otherZ;
+        final double distSq = dx * dx + dy * dy + dz * dz;
+        // Exactly touching clients still overlap, and are pushed out by nothing
+        if (distSq > radSum * radSum) return;
+
+        final double dist = Math.sqrt(distSq);
+        final double overlap = radSum - dist;
+        // Push out along the x axis if both clients are at the same position
+        final double nx = dist == 0 ? 1 : dx / dist;
+        final double ny = dist == 0 ? 0 : dy / dist;
+        final double nz = dist == 0 ? 0 : dz / dist;
+
+        final double mult = other.pushoutFactor * (1 - resistance) * overlap;
+        if (mult != 0) {
+            client.setWorldPos(x + nx * mult, y + ny * mult, z + nz * mult);
         }
+        final double otherMult = pushoutFactor * (1 - other.resistance) * overlap;
+        if (otherMult != 0) {
+            other.client.setWorldPos(otherX - nx * otherMult, otherY - ny * otherMult, otherZ - nz * otherMult);
+        }
+    }
+
+    /**
+     * Mark this controller as removed, so that it is discarded by the
+     * {@link CollisionSystem} at the start of the next update.
+     */
+    public void remove() {
+        removed = true;
     }
 
     /**
@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A system that resolves collisions between all {@link CollisionController}s
+ * in a world.
+ * <p>
+ * Collision is detected in two phases. The broad phase uses sort-and-sweep:
+ * controllers are kept sorted by the minimum x coordinate of their collision
+ * sphere, so only controllers whose x intervals overlap are ever paired. Since
+ * objects move very little between frames, the order barely changes and an
+ * insertion sort restores it in close to linear time. The narrow phase then
+ * resolves each overlapping pair exactly once via
+ * {@link CollisionController#resolve}.
+ *
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class CollisionSystem {
+    private final List<CollisionController> controllers;
+    // Minimum and maximum x bounds of each controller, parallel to controllers
+    private double[] minX;
+    private double[] maxX;
+
+    /**
+     * Create a new CollisionSystem with no controllers.
+     */
+    public CollisionSystem() {
+        controllers = new ArrayList<>();
+        minX = new double[16];
+        maxX = new double[16];
+    }
+
+    /**
+     * Add a controller to this system.
+     *
+     * @param controller the controller to add
+     */
+    public void add(CollisionController controller) {
+        controllers.add(controller);
+    }
+
+    /**
+     * Remove a controller from this system.
+     *
+     * @param controller the controller to remove
+     */
+    public void remove(CollisionController controller) {
+        controllers.remove(controller);
+    }
+
+    /**
+     * Get all controllers in this system.
+     *
+     * @return the list of controllers
+     */
+    public List<CollisionController> getControllers() {
+        return controllers;
+    }
+
+    /**
+     * Update all controllers, discarding those whose clients have left the
+     * world and pushing out all overlapping pairs.
+     */
+    public void update() {
+        // Discard removed controllers, keeping the order of the rest
+        int count = 0;
+        for (int i = 0; i < controllers.size(); i++) {
+            CollisionController controller = controllers.get(i);
+            if (controller.getWorld() == null) {
+                controller.remove();
+            }
+            if (!controller.isRemoved()) {
+                controllers.set(count++, controller);
+            }
+        }
+        controllers.subList(count, controllers.size()).clear();
+
+        if (minX.length < count) {
+            minX = new double[count * 2];
+            maxX = new double[count * 2];
+        }
+
+        // Insertion sort by minimum x bound, nearly sorted from last frame
+        for (int i = 0; i < count; i++) {
+            CollisionController controller = controllers.get(i);
+            double x = controller.getWorldX();
+            double low = x - controller.getRadius();
+            double high = x + controller.getRadius();
+            int j = i - 1;
+            while (j >= 0 && minX[j] > low) {
+                controllers.set(j + 1, controllers.get(j));
+                minX[j + 1] = minX[j];
+                maxX[j + 1] = maxX[j];
+                j--;
+            }
+            controllers.set(j + 1, controller);
+            minX[j + 1] = low;
+            maxX[j + 1] = high;
+        }
+
+        // Sweep, pairing only controllers with overlapping x intervals
+        for (int i = 0; i < count; i++) {
+            CollisionController controller = controllers.get(i);
+            for (int j = i + 1; j < count && minX[j] <= maxX[i]; j++) {
+                controller.resolve(controllers.get(j));
+            }
+        }
+    }
+}
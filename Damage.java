@@ -148,7 +148,6 @@ public class Damage {
      * Update the damage source. This will deal damage to entities within the
      * area of effect.
      */
-    @SuppressWarnings("unchecked")
     public void update() {
         if (damageTimer.ended()) {
             SprackWorld world = owner.getWorld();
@@ -169,15 +168,13 @@ public class Damage {
 
             if (deletables != null) {
                 for (Class<? extends WorldObject> deletable : deletables) {
-                    for (Sprite sprite : world.getSprites((Class<? extends Sprite>) deletable)) {
-                        WorldObject obj = (WorldObject) sprite;
-                        if (obj.getWorldPos().distanceTo(center) > radius) continue;
+                    for (WorldObject obj : world.getWorldObjectsWithinRange(center, radius, deletable)) {
                         if ((minAngle == 0 && maxAngle == 0)
                         || inAngularRange(obj.getWorldPos())) {
                             if (obj instanceof Feature) {
                                 ((Feature) obj).removeFromWorld();
                             } else {
-                                world.removeSprite(sprite);
+                                world.removeSprite((Sprite) obj);
                             }
                             deletedObjects.add(obj);
                         }
@@ -1,5 +1,3 @@
-import java.io.File;
-
 import greenfoot.Color;
 import greenfoot.Greenfoot;
 import greenfoot.GreenfootImage;
@@ -40,8 +38,7 @@ public class DeathScreen extends PixelWorld {
                            Text.AnchorX.CENTER, Text.AnchorY.CENTER),
                            125, 140);
         addSprite(new Button("Back", () -> Greenfoot.setWorld(new TitleWorld())), getWidth() / 2, 170);
-        File file = new File("saves/save_" + data.getSeed() + ".csv");
-        file.delete();
+        WorldData.deleteSave(data.getSeed());
 
         Music.stop();
     }
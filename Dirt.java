@@ -18,4 +18,9 @@ public class Dirt extends WorldSprite
         setOriginalImage(DIRT_VARIATIONS[dirtType]);
         setWorldRotation(rotation);
     }
+
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
 }
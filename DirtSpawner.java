@@ -1,5 +1,3 @@
-import java.util.Random;
-
 /**
  * A Feature that spawns a random patch of Dirt.
  *
@@ -8,12 +6,11 @@ import java.util.Random;
  */
 public class DirtSpawner extends Feature
 {
-    private Random random;
     private Dirt dirt;
 
     public DirtSpawner(FeatureData data) {
         super(null, data);
-        random = new Random(data.id);
+        HashRandom random = new HashRandom(data.id, 0);
         dirt = new Dirt(random.nextInt(5), random.nextInt(360));
     }
 
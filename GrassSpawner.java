@@ -1,6 +1,5 @@
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Random;
 
 /**
  * An invisible feature that spawns grass clusters
@@ -10,12 +9,11 @@ import java.util.Random;
  */
 public class GrassSpawner extends Feature
 {
-    private Random rand;
     private int numGrass;
     private List<Grass> allGrass;
     public GrassSpawner(FeatureData data){
         super(null, data);
-        rand = new Random(data.id);
+        HashRandom rand = new HashRandom(data.id, 0);
         numGrass = rand.nextInt(10 - 1) + 1;
         allGrass = new ArrayList<Grass>();
         for(int i=0; i<numGrass; i++){
@@ -26,6 +24,8 @@ public class GrassSpawner extends Feature
     @Override
     public void addedToWorld(PixelWorld world){
         SprackWorld w = (SprackWorld) world;
+        // the same sequence every time, so the grass comes back where it was
+        HashRandom rand = new HashRandom(getData().id, 1);
         for(Grass grass : allGrass){
             w.addWorldObject(grass, getWorldX() + rand.nextInt(30) - 15, getWorldY(), getWorldZ() + rand.nextInt(30) - 15);
         }
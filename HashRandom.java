@@ -0,0 +1,97 @@
+/**
+ * A counter-based random number generator, used for world generation.
+ * <p>
+ * Every random value is a hash of the keys it is generated from, such as the
+ * world seed, a tile, and a salt telling apart the different rolls made for
+ * the same tile. The same keys always give the same value, no matter which
+ * thread asks or in what order, and no state is shared between rolls.
+ * <p>
+ * The static methods generate single values without allocating anything. An
+ * instance generates a sequence of values from a pair of keys, by hashing a
+ * counter that is incremented after every value.
+ * <p>
+ * The hash is the finalizer of SplitMix64, which mixes every bit of its input
+ * into every bit of its output.
+ *
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class HashRandom {
+    // The golden ratio in fixed point, which spreads out consecutive keys
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long key;
+    private long counter;
+
+    /**
+     * Create a new sequence of random values from the given keys.
+     *
+     * @param seed the first key, such as the id of a feature
+     * @param salt the second key, telling apart sequences with the same seed
+     */
+    public HashRandom(long seed, long salt) {
+        key = hash(seed, salt);
+        counter = 0;
+    }
+
+    /**
+     * Get the next random integer of this sequence, between 0 (inclusive) and
+     * the bound (exclusive).
+     *
+     * @param bound the upper bound, which must be positive
+     * @return the random integer
+     */
+    public int nextInt(int bound) {
+        return nextInt(hash(key, counter++), bound);
+    }
+
+    /**
+     * Mix the bits of a value.
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Get a random value from two keys.
+     *
+     * @param a the first key
+     * @param b the second key
+     * @return the random value
+     */
+    public static long hash(long a, long b) {
+        return mix(mix(a + GAMMA) + b * GAMMA);
+    }
+
+    /**
+     * Get a random value from three keys, such as the world seed, a tile key,
+     * and a salt.
+     *
+     * @param a the first key
+     * @param b the second key
+     * @param c the third key
+     * @return the random value
+     */
+    public static long hash(long a, long b, long c) {
+        return hash(hash(a, b), c);
+    }
+
+    /**
+     * Turn a random value into a random integer between 0 (inclusive) and the
+     * bound (exclusive).
+     *
+     * @param hash the random value, see {@link #hash}
+     * @param bound the upper bound, which must be positive
+     * @return the random integer
+     */
+    public static int nextInt(long hash, int bound) {
+        // Scale the top 31 bits down to the bound, which keeps any bias far
+        // smaller than taking a remainder would
+        return (int) (((hash >>> 33) * bound) >>> 31);
+    }
+}
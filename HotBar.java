@@ -15,22 +15,23 @@ public class HotBar extends Sprite {
     private Item previouslyHeld;
     private Text itemText;
 
+    // The bar as last drawn, and the items and held item it was drawn with
+    private GreenfootImage image;
+    private ArrayList<Item> imageItems;
+    private Item imageHeld;
+
     public HotBar() {
         super(Layer.UI);
         itemText = new Text(" ", Text.AnchorX.CENTER, Text.AnchorY.BOTTOM);
+        imageItems = new ArrayList<>();
     }
 
     @Override
     public void render(GreenfootImage canvas) {
         SprackWorld world = (SprackWorld) getWorld();
         ArrayList<Item> playerItems = world.getPlayer().getHotbar();
-        int width = 0;
-
-        for (Item item : playerItems) {
-            width += item.getOriginalImage().getWidth() + MARGIN * 2;
-        }
 
-        if (width == 0) {
+        if (playerItems.isEmpty()) {
             if (itemText.getWorld() != null) {
                 world.removeSprite(itemText);
             }
@@ -38,30 +39,24 @@ public class HotBar extends Sprite {
             return;
         }
 
-        GreenfootImage hotbar = new GreenfootImage(width, HOTBAR_HEIGHT);
-        hotbar.setColor(new Color(192, 192, 192, 128));
-        hotbar.fill();
-
-        int startX = (world.getWidth() - width) / 2;
-
-        int y = world.getHeight() - HOTBAR_HEIGHT;
-        canvas.drawImage(hotbar, startX, y);
-
-        int x = startX;
-
         Item heldItem = null;
         for (Item item : playerItems) {
-            x += MARGIN;
-            GreenfootImage image = item.getOriginalImage();
-            canvas.drawImage(image, x, y + (HOTBAR_HEIGHT - image.getHeight()) / 2);
             if (item.getWorld() != null) {
                 heldItem = item;
-                canvas.setColor(Color.WHITE);
-                canvas.drawRect(x - MARGIN, y, image.getWidth() + MARGIN * 2, HOTBAR_HEIGHT - 1);
             }
-            x += image.getWidth() + MARGIN;
         }
 
+        // Only draw the bar again when its items or the held item change
+        if (image == null || heldItem != imageHeld || !sameItems(playerItems)) {
+            redrawImage(playerItems);
+            imageItems.clear();
+            imageItems.addAll(playerItems);
+            imageHeld = heldItem;
+        }
+
+        int y = world.getHeight() - HOTBAR_HEIGHT;
+        canvas.drawImage(image, (world.getWidth() - image.getWidth()) / 2, y);
+
         if (heldItem == null) return;
         if (previouslyHeld != heldItem) {
             previouslyHeld = heldItem;
@@ -71,4 +66,47 @@ public class HotBar extends Sprite {
             }
         }
     }
+
+    /**
+     * Check if the given items are the same items, in the same order, as the
+     * ones the bar was last drawn with.
+     *
+     * @param items the current items
+     * @return whether the items are the same
+     */
+    private boolean sameItems(ArrayList<Item> items) {
+        if (items.size() != imageItems.size()) return false;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) != imageItems.get(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Draw the bar with the given items, outlining the held item.
+     *
+     * @param items the items to draw
+     */
+    private void redrawImage(ArrayList<Item> items) {
+        int width = 0;
+        for (Item item : items) {
+            width += item.getOriginalImage().getWidth() + MARGIN * 2;
+        }
+
+        image = new GreenfootImage(width, HOTBAR_HEIGHT);
+        image.setColor(new Color(192, 192, 192, 128));
+        image.fill();
+
+        int x = 0;
+        for (Item item : items) {
+            x += MARGIN;
+            GreenfootImage itemImage = item.getOriginalImage();
+            image.drawImage(itemImage, x, (HOTBAR_HEIGHT - itemImage.getHeight()) / 2);
+            if (item.getWorld() != null) {
+                image.setColor(Color.WHITE);
+                image.drawRect(x - MARGIN, 0, itemImage.getWidth() + MARGIN * 2, HOTBAR_HEIGHT - 1);
+            }
+            x += itemImage.getWidth() + MARGIN;
+        }
+    }
 }
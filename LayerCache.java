@@ -0,0 +1,151 @@
+import greenfoot.*;
+
+import java.util.List;
+
+/**
+ * A cached image of the static sprites of a {@link Layer}, drawn over a solid
+ * background.
+ * <p>
+ * Static sprites (see {@link Sprite#isStatic}) are world space sprites that
+ * look the same every frame as long as the {@link Camera} does not turn or
+ * zoom. Instead of rendering them every frame, they are rendered once into an
+ * image slightly larger than the canvas, which is then drawn shifted by
+ * however far the camera has moved since. The image is only rendered again
+ * when the camera turns or zooms, when it has moved further than the extra
+ * margin around the canvas, or when the static sprites of the layer change.
+ * <p>
+ * The other sprites of the layer are still rendered every frame, on top of
+ * the cached image.
+ * <p>
+ * Since the background is part of the image and the image always covers the
+ * whole canvas, a cached layer also replaces clearing the canvas.
+ *
+ * @author Martin Baldwin
+ * @version June 2024
+ */
+public class LayerCache {
+    // The extra space around the canvas, in canvas pixels, that the camera
+    // can move through before the image has to be rendered again
+    private static final int MARGIN = 24;
+    // Differences in rotation (in degrees) and zoom smaller than these are too
+    // small to be seen, and still reuse the image
+    private static final double ROTATION_EPSILON = 0.05;
+    private static final double ZOOM_EPSILON = 0.0005;
+
+    private final GreenfootImage image;
+    private final Color background;
+    private boolean valid;
+
+    // The camera transform that the image was rendered with
+    private CameraTransform rendered;
+
+    /**
+     * Create a new layer cache for a canvas of the given size.
+     *
+     * @param width the width of the canvas, in pixels
+     * @param height the height of the canvas, in pixels
+     * @param background the color filling the canvas behind the layer
+     */
+    public LayerCache(int width, int height, Color background) {
+        image = new GreenfootImage(width + MARGIN * 2, height + MARGIN * 2);
+        this.background = background;
+        valid = false;
+    }
+
+    /**
+     * Mark the cached image as outdated, so that it is rendered again the next
+     * time the layer is rendered.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Mark the cached image as outdated if a static sprite that was added to
+     * or removed from the layer could be drawn in it. Sprites far enough from
+     * the camera, such as those of chunks loading around the player, leave
+     * the image valid.
+     *
+     * @param sprite the static sprite that was added or removed
+     */
+    public void invalidate(Sprite sprite) {
+        if (valid && !(sprite instanceof WorldSprite && isOutsideImage((WorldSprite) sprite))) {
+            valid = false;
+        }
+    }
+
+    /**
+     * Check if a world sprite would be drawn entirely outside of the cached
+     * image, as it was last rendered.
+     *
+     * @param sprite the sprite to check
+     * @return whether the sprite is outside of the image
+     */
+    private boolean isOutsideImage(WorldSprite sprite) {
+        GreenfootImage original = sprite.getOriginalImage();
+        if (original == null) return true;
+        // The image is drawn around its center of rotation, which is within
+        // the image, so it never reaches further than its diagonal
+        double radius = Math.hypot(original.getWidth(), original.getHeight()) * rendered.getZoom() + 1;
+        double x = rendered.getScreenX(sprite.getWorldX(), sprite.getWorldZ(), image.getWidth());
+        double y = rendered.getScreenY(sprite.getWorldX(), sprite.getWorldY(), sprite.getWorldZ(),
+                                       image.getHeight());
+        return x + radius < 0 || x - radius > image.getWidth()
+            || y + radius < 0 || y - radius > image.getHeight();
+    }
+
+    /**
+     * Render a layer to the canvas, using the cached image for its static
+     * sprites.
+     *
+     * @param canvas the canvas to render to
+     * @param sprites all sprites on the layer, in render order
+     */
+    public void render(GreenfootImage canvas, List<? extends Sprite> sprites) {
+        CameraTransform camera = Camera.getTransform();
+        if (!valid) {
+            renderImage(sprites);
+        } else {
+            double rotationDiff = Math.abs(camera.getRotation() - rendered.getRotation());
+            if (Math.min(rotationDiff, 360.0 - rotationDiff) >= ROTATION_EPSILON
+                || Math.abs(camera.getZoom() - rendered.getZoom()) >= ZOOM_EPSILON) {
+                renderImage(sprites);
+            }
+        }
+
+        // Everything rendered in the image has moved on the screen by the
+        // opposite of where the current camera position was on it
+        long shiftX = -Math.round(rendered.getScreenX(camera.getX(), camera.getZ(), 0));
+        long shiftY = -Math.round(rendered.getScreenY(camera.getX(), camera.getY(), camera.getZ(), 0));
+        if (Math.abs(shiftX) > MARGIN || Math.abs(shiftY) > MARGIN) {
+            renderImage(sprites);
+            shiftX = 0;
+            shiftY = 0;
+        }
+        canvas.drawImage(image, (int) shiftX - MARGIN, (int) shiftY - MARGIN);
+
+        for (Sprite sprite : sprites) {
+            if (sprite.isStatic() || sprite.isRemoved() || !sprite.isRendering()) continue;
+            sprite.render(canvas);
+        }
+    }
+
+    /**
+     * Render the background and static sprites of a layer into the cached
+     * image, with the current camera state.
+     *
+     * @param sprites all sprites on the layer, in render order
+     */
+    private void renderImage(List<? extends Sprite> sprites) {
+        image.setColor(background);
+        image.fill();
+        // World sprites are rendered around the center of the image, which is
+        // the center of the canvas plus the margin
+        for (Sprite sprite : sprites) {
+            if (!sprite.isStatic() || sprite.isRemoved() || !sprite.isRendering()) continue;
+            sprite.render(image);
+        }
+        rendered = Camera.getTransform();
+        valid = true;
+    }
+}
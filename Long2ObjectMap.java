@@ -0,0 +1,253 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map from primitive {@code long} keys to objects.
+ * <p>
+ * Unlike a {@code HashMap<Long, V>}, keys are never boxed and entries are not
+ * separate objects. Entries are stored in flat arrays using open addressing
+ * with linear probing, so a lookup is a few array reads.
+ * <p>
+ * Null values are not allowed, as an empty slot is marked by a null value.
+ * The map must not be modified while it is being iterated over.
+ *
+ * @param <V> the type of values in the map
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class Long2ObjectMap<V> {
+    /**
+     * An operation that accepts a key and value of a map entry.
+     *
+     * @param <V> the type of values in the map
+     * @author Andrew Wang
+     * @version June 2024
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        public void accept(long key, V value);
+    }
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Create a new empty map.
+     */
+    public Long2ObjectMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Create a new empty map that can hold the given number of entries
+     * without growing.
+     *
+     * @param expectedSize the number of entries expected
+     */
+    public Long2ObjectMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int size) {
+        // Keep the map at most half full so that probe sequences stay short
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Get the slot a key would be in, if there were no collisions.
+     */
+    private int home(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Find the slot of a key.
+     *
+     * @return the slot containing the key, or -1 if it is not in the map
+     */
+    private int indexOf(long key) {
+        for (int i = home(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the value mapped to a key.
+     *
+     * @param key the key to look up
+     * @return the value mapped to the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = indexOf(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    /**
+     * Check if a key is mapped to a value.
+     *
+     * @param key the key to look up
+     * @return whether the key is in this map
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Map a key to a value, replacing any value it was mapped to.
+     *
+     * @param key the key
+     * @param value the value, which must not be null
+     * @return the previous value mapped to the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Long2ObjectMap values must not be null");
+        }
+        int i = home(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return null;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == null) continue;
+            int i = home(oldKeys[j]);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * Remove the mapping of a key.
+     *
+     * @param key the key to remove
+     * @return the value that was mapped to the key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int gap = indexOf(key);
+        if (gap < 0) return null;
+        V previous = (V) values[gap];
+        values[gap] = null;
+        size--;
+        // Shift later entries of the probe sequence back into the gap, so that
+        // lookups never stop early at it
+        for (int i = (gap + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            if (((i - home(keys[i])) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                values[i] = null;
+                gap = i;
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Get the number of entries in this map.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if this map has no entries.
+     *
+     * @return whether this map is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all entries from this map.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Perform an operation on every entry in this map, in no particular order.
+     *
+     * @param action the operation to perform
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * Get all values in this map, in no particular order.
+     *
+     * @return an iterable over the values of this map
+     */
+    public Iterable<V> values() {
+        return () -> new Iterator<V>() {
+            private int next = advance(0);
+
+            private int advance(int i) {
+                while (i < values.length && values[i] == null) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                V value = (V) values[next];
+                next = advance(next + 1);
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A hash set of primitive {@code long} values.
+ * <p>
+ * Values are never boxed, and are stored in a flat array using open
+ * addressing with linear probing, like {@link Long2ObjectMap}. The set must
+ * not be modified while it is being iterated over.
+ *
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class LongHashSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    /**
+     * Create a new empty set.
+     */
+    public LongHashSet() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Get the slot a value would be in, if there were no collisions.
+     */
+    private int home(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private int indexOf(long value) {
+        for (int i = home(value); used[i]; i = (i + 1) & mask) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Check if a value is in this set.
+     *
+     * @param value the value to look for
+     * @return whether the value is in this set
+     */
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Add a value to this set.
+     *
+     * @param value the value to add
+     * @return whether the value was not already in this set
+     */
+    public boolean add(long value) {
+        int i = home(value);
+        for (; used[i]; i = (i + 1) & mask) {
+            if (values[i] == value) return false;
+        }
+        values[i] = value;
+        used[i] = true;
+        // Keep the set at most half full so that probe sequences stay short
+        if (++size * 2 > values.length) {
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            allocate(values.length * 2);
+            for (int j = 0; j < oldValues.length; j++) {
+                if (!oldUsed[j]) continue;
+                int k = home(oldValues[j]);
+                while (used[k]) {
+                    k = (k + 1) & mask;
+                }
+                values[k] = oldValues[j];
+                used[k] = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a value from this set.
+     *
+     * @param value the value to remove
+     * @return whether the value was in this set
+     */
+    public boolean remove(long value) {
+        int gap = indexOf(value);
+        if (gap < 0) return false;
+        used[gap] = false;
+        size--;
+        // Shift later values of the probe sequence back into the gap, so that
+        // lookups never stop early at it
+        for (int i = (gap + 1) & mask; used[i]; i = (i + 1) & mask) {
+            if (((i - home(values[i])) & mask) >= ((i - gap) & mask)) {
+                values[gap] = values[i];
+                used[gap] = true;
+                used[i] = false;
+                gap = i;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of values in this set.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if this set has no values.
+     *
+     * @return whether this set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copy the values in this set into a new array, in no particular order.
+     *
+     * @return an array of the values in this set
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (used[i]) {
+                result[n++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove all values from this set.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Perform an operation on every value in this set, in no particular order.
+     *
+     * @param action the operation to perform
+     */
+    public void forEach(LongConsumer action) {
+        for (int i = 0; i < values.length; i++) {
+            if (used[i]) {
+                action.accept(values[i]);
+            }
+        }
+    }
+}
@@ -46,17 +46,12 @@ public class MouseManager {
     public static Vector2 getMouseWorldPos() {
         greenfoot.MouseInfo mouseInfo = Greenfoot.getMouseInfo();
         if (mouseInfo == null) return null;
-        Vector2 screenCenter =
-            new Vector2(SprackWorld.WORLD_WIDTH * PixelWorld.PIXEL_SCALE / 2,
-                        SprackWorld.WORLD_HEIGHT * PixelWorld.PIXEL_SCALE / 2);
-        int x = mouseInfo.getX();
-        int y = mouseInfo.getY();
-        Vector2 mousePos = new Vector2(x, y).subtract(screenCenter);
-        double screenRot = Camera.getRotation();
-        double scale = Camera.getZoom() * PixelWorld.PIXEL_SCALE;
-        mousePos = mousePos.divide(scale);
-        mousePos = mousePos.rotate(screenRot);
-        return new Vector2(Camera.getX(), Camera.getZ()).add(mousePos);
+        // The mouse is over the scaled up canvas
+        double x = mouseInfo.getX() / (double) PixelWorld.PIXEL_SCALE;
+        double y = mouseInfo.getY() / (double) PixelWorld.PIXEL_SCALE;
+        CameraTransform camera = Camera.getTransform();
+        return new Vector2(camera.getWorldX(x, y, SprackWorld.WORLD_WIDTH, SprackWorld.WORLD_HEIGHT),
+                           camera.getWorldZ(x, y, SprackWorld.WORLD_WIDTH, SprackWorld.WORLD_HEIGHT));
     }
 
     /**
@@ -0,0 +1,212 @@
+/**
+ * A mutable 3D vector class.
+ * <p>
+ * Unlike {@link Vector3}, every operation modifies this vector in place and
+ * returns it, so that vector math that runs every frame, like in
+ * {@link PhysicsController}, does not allocate new objects. Use
+ * {@link #toVector3()} to hand out an immutable copy.
+ * <p>
+ * Operations are calculated in the same order as their {@link Vector3}
+ * equivalents, so results are identical.
+ *
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class MutableVector3 {
+    /**
+     * The x component of the vector.
+     */
+    public double x;
+    /**
+     * The y component of the vector.
+     */
+    public double y;
+    /**
+     * The z component of the vector.
+     */
+    public double z;
+
+    /**
+     * Create a new MutableVector3 with the given components.
+     *
+     * @param x the x component
+     * @param y the y component
+     * @param z the z component
+     */
+    public MutableVector3(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Create a new zero MutableVector3.
+     */
+    public MutableVector3() {
+        this(0, 0, 0);
+    }
+
+    /**
+     * Set the components of this vector.
+     *
+     * @param x the new x component
+     * @param y the new y component
+     * @param z the new z component
+     * @return this vector
+     */
+    public MutableVector3 set(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Set the components of this vector to those of the given vector.
+     *
+     * @param other the vector to copy
+     * @return this vector
+     */
+    public MutableVector3 set(Vector3 other) {
+        return set(other.x, other.y, other.z);
+    }
+
+    /**
+     * Add the given components to this vector.
+     *
+     * @param x the x component to add
+     * @param y the y component to add
+     * @param z the z component to add
+     * @return this vector
+     */
+    public MutableVector3 add(double x, double y, double z) {
+        this.x += x;
+        this.y += y;
+        this.z += z;
+        return this;
+    }
+
+    /**
+     * Add the given vector to this vector.
+     *
+     * @param other the vector to add
+     * @return this vector
+     */
+    public MutableVector3 add(Vector3 other) {
+        return add(other.x, other.y, other.z);
+    }
+
+    /**
+     * Add the given vector to this vector.
+     *
+     * @param other the vector to add
+     * @return this vector
+     */
+    public MutableVector3 add(MutableVector3 other) {
+        return add(other.x, other.y, other.z);
+    }
+
+    /**
+     * Multiply this vector by the given scalar.
+     *
+     * @param scalar the scalar to multiply by
+     * @return this vector
+     */
+    public MutableVector3 multiply(double scalar) {
+        x *= scalar;
+        y *= scalar;
+        z *= scalar;
+        return this;
+    }
+
+    /**
+     * Get the magnitude of this vector.
+     *
+     * @return the magnitude
+     */
+    public double magnitude() {
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * Get the magnitude of the x and z components of this vector.
+     *
+     * @return the magnitude on the XZ plane
+     */
+    public double xzMagnitude() {
+        return Math.sqrt(x * x + z * z);
+    }
+
+    /**
+     * Get the angle of the x and z components of this vector.
+     *
+     * @return the angle on the XZ plane, in degrees
+     */
+    public double xzAngle() {
+        return Math.toDegrees(Math.atan2(z, x));
+    }
+
+    /**
+     * Clamp the magnitude of this vector to the given value.
+     *
+     * @param maxMagnitude the maximum magnitude
+     * @return this vector
+     */
+    public MutableVector3 clampMagnitude(double maxMagnitude) {
+        double magnitude = magnitude();
+        if (magnitude > maxMagnitude) {
+            x = x / magnitude * maxMagnitude;
+            y = y / magnitude * maxMagnitude;
+            z = z / magnitude * maxMagnitude;
+        }
+        return this;
+    }
+
+    /**
+     * Reduce the magnitude of this vector by the given amount, without
+     * reversing its direction. A zero vector is left unchanged.
+     *
+     * @param amount the amount to reduce the magnitude by
+     * @return this vector
+     */
+    public MutableVector3 reduceMagnitude(double amount) {
+        double magnitude = magnitude();
+        if (magnitude == 0) return this;
+        double reduction = Math.min(magnitude, amount);
+        x -= x / magnitude * reduction;
+        y -= y / magnitude * reduction;
+        z -= z / magnitude * reduction;
+        return this;
+    }
+
+    /**
+     * Reduce the magnitude of the x and z components of this vector by the
+     * given amount, without reversing their direction. The y component is
+     * unchanged, and so is a vector with no x or z component.
+     *
+     * @param amount the amount to reduce the magnitude by
+     * @return this vector
+     */
+    public MutableVector3 reduceXZMagnitude(double amount) {
+        double magnitude = xzMagnitude();
+        if (magnitude == 0) return this;
+        double reduction = Math.min(magnitude, amount);
+        x -= x / magnitude * reduction;
+        z -= z / magnitude * reduction;
+        return this;
+    }
+
+    /**
+     * Create an immutable copy of this vector.
+     *
+     * @return a new Vector3 with the same components
+     */
+    public Vector3 toVector3() {
+        return new Vector3(x, y, z);
+    }
+
+    @Override
+    public String toString() {
+        return "MutableVector3(" + x + ", " + y + ", " + z + ")";
+    }
+}
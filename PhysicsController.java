@@ -5,6 +5,9 @@
  * To add physics to a client object, create a new {@link PhysicsController}
  * with the client object as the host, and call {@link #update()} on the
  * controller every frame. Apply forces to the client before calling update.
+ * <p>
+ * Accelerations and velocities are kept in {@link MutableVector3}s and updated
+ * in place, so updating does not allocate any vectors.
  *
  * @author Andrew Wang
  * @version June 2024
@@ -39,10 +42,10 @@ public class PhysicsController {
 
     private WorldObject client;
 
-    private Vector3 internalAccel;
-    private Vector3 externalAccel;
-    private Vector3 internalVel;
-    private Vector3 externalVel;
+    private final MutableVector3 internalAccel;
+    private final MutableVector3 externalAccel;
+    private final MutableVector3 internalVel;
+    private final MutableVector3 externalVel;
     private double maxSpeed;
     private double maxAccel;
     private double airResMag;
@@ -54,10 +57,10 @@ public class PhysicsController {
 
     public PhysicsController(WorldObject client) {
         this.client = client;
-        internalAccel = new Vector3();
-        externalAccel = new Vector3();
-        internalVel = new Vector3();
-        externalVel = new Vector3();
+        internalAccel = new MutableVector3();
+        externalAccel = new MutableVector3();
+        internalVel = new MutableVector3();
+        externalVel = new MutableVector3();
         maxSpeed = MAX_SPEED;
         maxAccel = MAX_ACCEL_MAG;
         airResMag = AIR_RES_MAG;
@@ -147,7 +150,7 @@ public class PhysicsController {
      * @param accel the acceleration vector
      */
     public void accelerate(Vector3 accel) {
-        internalAccel = internalAccel.add(accel);
+        internalAccel.add(accel);
     }
 
     /**
@@ -160,7 +163,7 @@ public class PhysicsController {
      * @param accel the acceleration vector
      */
     public void accelerate(Vector2 accel) {
-        accelerate(Vector3.fromXZ(accel));
+        internalAccel.add(accel.x, 0, accel.y);
     }
 
     /**
@@ -172,7 +175,7 @@ public class PhysicsController {
      * @param target the target position
      */
     public void accelTowards(Vector3 target) {
-        accelerate(target.subtract(getWorldPos()));
+        internalAccel.add(target.x - getWorldX(), target.y - getWorldY(), target.z - getWorldZ());
     }
 
     /**
@@ -235,7 +238,7 @@ public class PhysicsController {
      * @param force the force vector
      */
     public void applyForce(Vector3 force) {
-        externalAccel = externalAccel.add(force);
+        externalAccel.add(force);
     }
 
     /**
@@ -247,7 +250,7 @@ public class PhysicsController {
      * @param force the force vector
      */
     public void applyForce(Vector2 force) {
-        applyForce(Vector3.fromXZ(force));
+        externalAccel.add(force.x, 0, force.y);
     }
 
     /**
@@ -259,8 +262,8 @@ public class PhysicsController {
      * @param factor the factor by which to reduce the client's momentum
      */
     public void reduceMomentum(double factor) {
-        internalVel = internalVel.multiply(1 - factor);
-        externalVel = externalVel.multiply(1 - factor);
+        internalVel.multiply(1 - factor);
+        externalVel.multiply(1 - factor);
     }
 
     /**
@@ -274,81 +277,69 @@ public class PhysicsController {
             // d = (Vf^2 - Vi^2) / 2a
             // Vf = 0
             // d = -Vi^2 / 2a
-            final double vi = internalVel.xz.magnitude();
+            final double vi = internalVel.xzMagnitude();
             final double d = vi * vi / (2 * FRIC_MAG);
             // stop accelerating if the client is close enough to the target
             // that friction will stop it just in time to reach the target
-            if (getWorldPos().distanceTo(target) < d) {
+            final double dx = getWorldX() - target.x;
+            final double dy = getWorldY() - target.y;
+            final double dz = getWorldZ() - target.z;
+            if (Math.sqrt(dx * dx + dy * dy + dz * dz) < d) {
                 targeting = false;
             }
         }
 
         // Clamp internal acceleration
-        try {
-            internalAccel = internalAccel.clampMagnitude(maxAccel);
-        } catch (ArithmeticException e) {} // Do nothing if acceleration is zero
+        internalAccel.clampMagnitude(maxAccel);
 
         // Apply gravity
-        if (affectedByGravity) applyForce(new Vector3(0, GRAVITY, 0));
+        if (affectedByGravity) externalAccel.add(0, GRAVITY, 0);
 
         if (affectedByFrictionalForces) {
             // Apply acceleration due to air resistance to internal velocity
-            try {
-                double mag = Math.min(internalVel.magnitude(), airResMag);
-                Vector3 airRes = internalVel.scaleToMagnitude(mag);
-                internalVel = internalVel.subtract(airRes);
-            } catch (ArithmeticException e) {} // Do nothing if velocity is zero
+            internalVel.reduceMagnitude(airResMag);
 
             if (getWorldY() == 0) {
                 // Apply acceleration due to friction to internal velocity
-                try {
-                    double horFricMag = Math.min(internalVel.xz.magnitude(), FRIC_MAG);
-                    Vector2 fric = internalVel.xz.scaleToMagnitude(horFricMag);
-                    internalVel = internalVel.subtractXZ(fric);
-                } catch (ArithmeticException e) {} // Do nothing if velocity is zero
+                internalVel.reduceXZMagnitude(FRIC_MAG);
             }
         }
 
         // Update internal velocity
-        internalVel = internalVel.add(internalAccel);
+        internalVel.add(internalAccel);
 
         // Clamp internal velocity
-        internalVel = internalVel.clampMagnitude(maxSpeed);
+        internalVel.clampMagnitude(maxSpeed);
 
         if (affectedByFrictionalForces) {
             // Apply acceleration due to air resistance to external velocity
-            try {
-                double mag = Math.min(externalVel.magnitude(), airResMag);
-                Vector3 airRes = externalVel.scaleToMagnitude(mag);
-                externalVel = externalVel.subtract(airRes);
-            } catch (ArithmeticException e) {} // Do nothing if velocity is zero
+            externalVel.reduceMagnitude(airResMag);
 
             if (getWorldY() == 0) {
                 // Apply acceleration due to friction to external velocity
-                try {
-                    double horFricMag = Math.min(externalVel.xz.magnitude(), FRIC_MAG);
-                    Vector2 fric = externalVel.xz.scaleToMagnitude(horFricMag);
-                    externalVel = externalVel.subtractXZ(fric);
-                } catch (ArithmeticException e) {} // Do nothing if velocity is zero
+                externalVel.reduceXZMagnitude(FRIC_MAG);
             }
         }
 
         // Update external velocity
-        externalVel = externalVel.add(externalAccel);
+        externalVel.add(externalAccel);
 
         // Update position
-        setWorldPos(getWorldPos().add(getVelocity()));
+        double x = getWorldX() + (internalVel.x + externalVel.x);
+        double y = getWorldY() + (internalVel.y + externalVel.y);
+        double z = getWorldZ() + (internalVel.z + externalVel.z);
 
         // Clamp position
-        if (getWorldY() < 0) {
-            setWorldPos(getWorldPos().setY(0));
-            internalVel = internalVel.setY(0);
-            externalVel = externalVel.setY(0);
+        if (y < 0) {
+            y = 0;
+            internalVel.y = 0;
+            externalVel.y = 0;
         }
+        client.setWorldPos(x, y, z);
 
         // Reset acceleration
-        internalAccel = new Vector3();
-        externalAccel = new Vector3();
+        internalAccel.set(0, 0, 0);
+        externalAccel.set(0, 0, 0);
 
         // Turn towards movement
         if (alwaysTurnTowardsMovement) {
@@ -363,7 +354,7 @@ public class PhysicsController {
         if (!isMoving()) return;
         double facing = Vector2.lerpAngle(
             getWorldRotation(),
-            internalVel.xz.angle(),
+            internalVel.xzAngle(),
             ROT_ACCEL
         );
         setWorldRotation(facing);
@@ -423,7 +414,9 @@ public class PhysicsController {
      * @return the client's velocity
      */
     public Vector3 getVelocity() {
-        return internalVel.add(externalVel);
+        return new Vector3(internalVel.x + externalVel.x,
+                           internalVel.y + externalVel.y,
+                           internalVel.z + externalVel.z);
     }
 
     /**
@@ -432,10 +425,10 @@ public class PhysicsController {
      * This is the velocity caused by the client's internal acceleration, which
      * does not include the velocity caused by external forces.
      *
-     * @return the client's internal velocity
+     * @return a copy of the client's internal velocity
      */
     public Vector3 getInternalVelocity() {
-        return internalVel;
+        return internalVel.toVector3();
     }
 
     /**
@@ -444,10 +437,10 @@ public class PhysicsController {
      * This is the velocity caused by external forces, which does not include
      * the velocity caused by the client's internal acceleration.
      *
-     * @return the client's external velocity
+     * @return a copy of the client's external velocity
      */
     public Vector3 getExternalVelocity() {
-        return externalVel;
+        return externalVel.toVector3();
     }
 
     /**
@@ -459,7 +452,7 @@ public class PhysicsController {
      * @return true if the client is moving, false otherwise
      */
     public boolean isMoving() {
-        return internalVel.xz.magnitude() != 0;
+        return internalVel.xzMagnitude() != 0;
     }
 
     /**
@@ -1,5 +1,12 @@
 import greenfoot.*;
 
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -27,14 +34,25 @@ public abstract class PixelWorld extends World {
     /** The scale factor of all PixelWorld display images. */
     public static final int PIXEL_SCALE = 4;
 
+    // The marks of the last cull pass of any world, see cullSprites
+    private static int cullPass = 0;
+
     private final int worldWidth;
     private final int worldHeight;
     private final GreenfootImage canvas;
+    // The scaled up canvas, drawn over every frame and kept as the background
+    private final GreenfootImage display;
 
     // All sprites in this world mapped by their classes, for efficient access
     private Map<Class<? extends Sprite>, List<Sprite>> spritesByClass;
     // Sprite objects mapped by their assigned layer, for rendering order
     private Map<Layer, List<Sprite>> spritesByLayer;
+    // The caches of layers whose static sprites are drawn from a cached image
+    private Map<Layer, LayerCache> layerCaches;
+    // The sprites of culled layers that are rendered this frame
+    private Map<Layer, List<Sprite>> visibleByLayer;
+    private List<Sprite> newlyVisible;
+    private Map<Layer, SpriteSorter> layerSorters;
     private List<Sprite> queuedRemovals;
     private List<Sprite> queuedAdditions;
 
@@ -49,6 +67,7 @@ public abstract class PixelWorld extends World {
     public PixelWorld(int worldWidth, int worldHeight) {
         super(worldWidth * PIXEL_SCALE, worldHeight * PIXEL_SCALE, 1, false);
         canvas = new GreenfootImage(worldWidth, worldHeight);
+        display = new GreenfootImage(worldWidth * PIXEL_SCALE, worldHeight * PIXEL_SCALE);
         this.worldWidth = worldWidth;
         this.worldHeight = worldHeight;
 
@@ -57,6 +76,10 @@ public abstract class PixelWorld extends World {
         for (Layer layer : Layer.values()) {
             spritesByLayer.put(layer, new ArrayList<Sprite>());
         }
+        layerCaches = new EnumMap<Layer, LayerCache>(Layer.class);
+        visibleByLayer = new EnumMap<Layer, List<Sprite>>(Layer.class);
+        newlyVisible = new ArrayList<Sprite>();
+        layerSorters = new EnumMap<Layer, SpriteSorter>(Layer.class);
 
         queuedRemovals = new ArrayList<Sprite>();
         queuedAdditions = new ArrayList<Sprite>();
@@ -93,11 +116,24 @@ public abstract class PixelWorld extends World {
         return canvas;
     }
 
+    /**
+     * Update, render, and display this world, timing each phase with the
+     * {@link Profiler}.
+     */
     @Override
     public void act() {
+        Profiler.beginFrame();
+        Profiler.begin("update");
         update();
+        Profiler.end("update");
+        Profiler.begin("render");
         render();
+        Profiler.end("render");
+        Profiler.drawOverlay(canvas);
+        Profiler.begin("image");
         updateImage();
+        Profiler.end("image");
+        Profiler.endFrame(this);
     }
 
     /**
@@ -106,11 +142,67 @@ public abstract class PixelWorld extends World {
      * The canvas image of this world is scaled and drawn onto the world
      * background. This method should be called after all world rendering has
      * been done.
+     * <p>
+     * Every canvas pixel becomes a square of {@link #PIXEL_SCALE} by
+     * {@link #PIXEL_SCALE} pixels in the same background image each time, so
+     * no images are created.
      */
     public void updateImage() {
-        GreenfootImage scaled = new GreenfootImage(canvas);
-        scaled.scale(worldWidth * PIXEL_SCALE, worldHeight * PIXEL_SCALE);
-        setBackground(scaled);
+        BufferedImage src = canvas.getAwtImage();
+        BufferedImage dst = display.getAwtImage();
+        if (!copyScaledPixels(src, dst)) {
+            Graphics2D g = dst.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(src, 0, 0, dst.getWidth(), dst.getHeight(), null);
+            g.dispose();
+        }
+        setBackground(display);
+    }
+
+    /**
+     * Scale up the pixels of one image into another by copying them directly
+     * between their int arrays, if both images store their pixels that way.
+     *
+     * @param src the canvas image
+     * @param dst the display image, PIXEL_SCALE times the size of the canvas
+     * @return whether the pixels were copied, or false if the images do not
+     *         share a packed int pixel format
+     */
+    private static boolean copyScaledPixels(BufferedImage src, BufferedImage dst) {
+        if (src.getType() != dst.getType()
+            || !(src.getSampleModel() instanceof SinglePixelPackedSampleModel)
+            || !(dst.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+            return false;
+        }
+        DataBuffer srcBuffer = src.getRaster().getDataBuffer();
+        DataBuffer dstBuffer = dst.getRaster().getDataBuffer();
+        if (!(srcBuffer instanceof DataBufferInt) || !(dstBuffer instanceof DataBufferInt)) {
+            return false;
+        }
+        int[] srcPixels = ((DataBufferInt) srcBuffer).getData();
+        int[] dstPixels = ((DataBufferInt) dstBuffer).getData();
+        int srcStride = ((SinglePixelPackedSampleModel) src.getSampleModel()).getScanlineStride();
+        int dstStride = ((SinglePixelPackedSampleModel) dst.getSampleModel()).getScanlineStride();
+        int width = src.getWidth();
+        int height = src.getHeight();
+
+        for (int y = 0; y < height; y++) {
+            int srcRow = srcBuffer.getOffset() + y * srcStride;
+            int dstRow = dstBuffer.getOffset() + y * PIXEL_SCALE * dstStride;
+            // Widen the first row of this square of rows, then copy it down
+            int i = dstRow;
+            for (int x = 0; x < width; x++) {
+                int pixel = srcPixels[srcRow + x];
+                for (int k = 0; k < PIXEL_SCALE; k++) {
+                    dstPixels[i++] = pixel;
+                }
+            }
+            for (int k = 1; k < PIXEL_SCALE; k++) {
+                System.arraycopy(dstPixels, dstRow, dstPixels, dstRow + k * dstStride, width * PIXEL_SCALE);
+            }
+        }
+        return true;
     }
 
     /**
@@ -158,8 +250,10 @@ public abstract class PixelWorld extends World {
 
             // Add sprites to the list for their layers
             spritesByLayer.get(sprite.getLayer()).add(sprite);
+            invalidateLayerCache(sprite);
 
             sprite.setWorld(this);
+            spriteAdded(sprite);
             sprite.addedToWorld(this);
         }
     }
@@ -176,30 +270,179 @@ public abstract class PixelWorld extends World {
 
             // Remove sprite from the list for their layers
             spritesByLayer.get(sprite.getLayer()).remove(sprite);
+            invalidateLayerCache(sprite);
 
             sprite.setWorld(null);
+            spriteRemoved(sprite);
             sprite.removedFromWorld(this);
         }
     }
 
+    /**
+     * Invalidate the cache of a sprite's layer, if the sprite is drawn from it
+     * and could be in the cached image.
+     *
+     * @param sprite the sprite that changed
+     */
+    private void invalidateLayerCache(Sprite sprite) {
+        LayerCache cache = layerCaches.get(sprite.getLayer());
+        if (cache != null && sprite.isStatic()) {
+            cache.invalidate(sprite);
+        }
+    }
+
+    /**
+     * Set the cache used to render a layer, so that its static sprites are
+     * drawn from a cached image instead of being rendered every frame.
+     *
+     * @param layer the layer to cache
+     * @param cache the cache to use, or null to render the layer normally
+     * @see LayerCache
+     */
+    public void setLayerCache(Layer layer, LayerCache cache) {
+        if (cache == null) {
+            layerCaches.remove(layer);
+        } else {
+            layerCaches.put(layer, cache);
+        }
+    }
+
+    /**
+     * Set whether a layer is culled, so that each frame its sprites are
+     * checked with {@link Sprite#cull} before sorting and rendering, and only
+     * the ones that are not culled are sorted and rendered.
+     *
+     * @param layer the layer to cull
+     * @param culled whether to cull the layer
+     */
+    public void setLayerCulled(Layer layer, boolean culled) {
+        if (culled) {
+            visibleByLayer.put(layer, new ArrayList<Sprite>());
+        } else {
+            visibleByLayer.remove(layer);
+        }
+    }
+
+    /**
+     * Set whether a layer is sorted, so that each frame its sprites are
+     * rendered in order of their {@link Sprite#getSortValue}.
+     *
+     * @param layer the layer to sort
+     * @param sorted whether to sort the layer
+     * @see SpriteSorter
+     */
+    public void setLayerSorted(Layer layer, boolean sorted) {
+        if (sorted) {
+            layerSorters.put(layer, new SpriteSorter());
+        } else {
+            layerSorters.remove(layer);
+        }
+    }
+
+    /**
+     * Called when a queued sprite has been added to this world's sprite lists,
+     * before the sprite's own {@link Sprite#addedToWorld} method is called.
+     * <p>
+     * Override this method to keep any additional indices of sprites in sync
+     * with this world. By default, this method does nothing.
+     *
+     * @param sprite the sprite that was added
+     */
+    protected void spriteAdded(Sprite sprite) {}
+
+    /**
+     * Called when a queued sprite has been removed from this world's sprite
+     * lists, before the sprite's own {@link Sprite#removedFromWorld} method is
+     * called.
+     * <p>
+     * Override this method to keep any additional indices of sprites in sync
+     * with this world. By default, this method does nothing.
+     *
+     * @param sprite the sprite that was removed
+     */
+    protected void spriteRemoved(Sprite sprite) {}
+
     /**
      * Renders all Sprites currently in this world by layer. Sprites are
      * rendered by calling the {@link Sprite#render} method on this world's
      * canvas.
      * <p>
      * Render order is defined by the order of layers in the {@link Layer} enum.
+     * Culled layers only render their visible sprites, see
+     * {@link #setLayerCulled}, and sorted layers are sorted first, see
+     * {@link #setLayerSorted}. Layers with a cache are rendered through it, see
+     * {@link #setLayerCache}.
      *
      * @see Layer
      */
     public void renderSprites() {
-        for (List<Sprite> layerSprites : spritesByLayer.values()) {
-            for (Sprite sprite : layerSprites) {
+        Profiler.begin("cull");
+        cullSprites();
+        Profiler.end("cull");
+        Profiler.begin("sort");
+        for (Map.Entry<Layer, SpriteSorter> entry : layerSorters.entrySet()) {
+            entry.getValue().sort(getVisibleSprites(entry.getKey()));
+        }
+        Profiler.end("sort");
+
+        for (Layer layer : spritesByLayer.keySet()) {
+            List<Sprite> sprites = getVisibleSprites(layer);
+            LayerCache cache = layerCaches.get(layer);
+            if (cache != null) {
+                cache.render(canvas, sprites);
+                continue;
+            }
+            for (Sprite sprite : sprites) {
                 if (sprite.isRemoved() || !sprite.isRendering()) continue;
                 sprite.render(canvas);
             }
         }
     }
 
+    /**
+     * Find the sprites of every culled layer that are rendered this frame.
+     * <p>
+     * Sprites that were already visible last frame keep their order, and the
+     * newly visible ones are added after them, so that sorted layers are only
+     * slightly out of order and quick to sort again.
+     */
+    private void cullSprites() {
+        for (Map.Entry<Layer, List<Sprite>> entry : visibleByLayer.entrySet()) {
+            List<Sprite> visible = entry.getValue();
+            // Mark the sprites visible last frame, then mark the ones still
+            // visible with the next mark
+            int listed = cullPass + 1;
+            int kept = cullPass + 2;
+            cullPass = kept;
+            for (Sprite sprite : visible) {
+                sprite.setCullMark(listed);
+            }
+            newlyVisible.clear();
+            for (Sprite sprite : spritesByLayer.get(entry.getKey())) {
+                if (sprite.isRemoved() || !sprite.isRendering()) continue;
+                if (sprite.cull(worldWidth, worldHeight)) continue;
+                if (sprite.getCullMark() != listed) {
+                    newlyVisible.add(sprite);
+                }
+                sprite.setCullMark(kept);
+            }
+            visible.removeIf(sprite -> sprite.getCullMark() != kept);
+            visible.addAll(newlyVisible);
+        }
+    }
+
+    /**
+     * Get the sprites of a layer that are rendered this frame, which are all
+     * of its sprites unless the layer is culled.
+     *
+     * @param layer the layer to get sprites from
+     * @return the list of sprites to render
+     */
+    private List<Sprite> getVisibleSprites(Layer layer) {
+        List<Sprite> visible = visibleByLayer.get(layer);
+        return visible != null ? visible : spritesByLayer.get(layer);
+    }
+
     /**
      * Queue a Sprite to be added to this world.
      *
@@ -1,6 +1,5 @@
 import greenfoot.*;
 import java.util.List;
-import java.util.Random;
 import java.util.ArrayList;
 
 /**
@@ -14,20 +13,21 @@ public class Pond extends WorldSprite
     private static final GreenfootImage[] POND_VARIATIONS = {new GreenfootImage("pond1.png"),
         new GreenfootImage("pond2.png"), new GreenfootImage("pond3.png")};
 
-    private Random rand;
+    private long id;
     private List<Cattail> cattails;
     private List<LilyPad> lilyPads;
     private int numCattails;
     private int numLilyPads;
 
     /**
-     * Make a pond with a defined seeded Random.
+     * Make a pond whose plants are rolled from the id of its spawner.
      */
-    public Pond(Random rand, int pondType, int rotation){
+    public Pond(long id, int pondType, int rotation){
         super(Layer.GROUND);
         setOriginalImage(POND_VARIATIONS[pondType]);
         setWorldRotation(rotation);
-        this.rand = rand;
+        this.id = id;
+        HashRandom rand = new HashRandom(id, 2);
 
         cattails = new ArrayList<>();
         numCattails = rand.nextInt(14 - 5) + 5;
@@ -44,6 +44,8 @@ public class Pond extends WorldSprite
     @Override
     public void addedToWorld(PixelWorld world){
         SprackWorld w = (SprackWorld) world;
+        // the same sequence every time, so the plants come back where they were
+        HashRandom rand = new HashRandom(id, 3);
         int size = getSize();
         for(Cattail cattail : cattails){
             w.addWorldObject(cattail, getWorldX() + rand.nextInt(size) - size / 2, getWorldY(), getWorldZ() + rand.nextInt(size) - size / 2);
@@ -63,6 +65,11 @@ public class Pond extends WorldSprite
         return (getOriginalImage().getWidth() + getOriginalImage().getHeight()) / 2;
     }
 
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
     @Override
     public void removedFromWorld(PixelWorld world){
         for(Cattail cattail : cattails){
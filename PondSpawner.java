@@ -1,5 +1,3 @@
-import java.util.Random;
-
 /**
  * A Feature that creates {@link Pond}s.
  *
@@ -8,13 +6,12 @@ import java.util.Random;
  */
 public class PondSpawner extends Feature
 {
-    private Random random;
     private Pond pond;
 
     public PondSpawner(FeatureData data) {
         super(null, data);
-        random = new Random(data.id);
-        pond = new Pond(random, random.nextInt(3), random.nextInt(360));
+        HashRandom random = new HashRandom(data.id, 0);
+        pond = new Pond(data.id, random.nextInt(3), random.nextInt(360));
     }
 
     @Override
@@ -0,0 +1,205 @@
+import java.util.Arrays;
+
+/**
+ * A store of objects with ids and 2D positions, laid out as a structure of
+ * arrays.
+ * <p>
+ * Ids, objects, and x and y coordinates are kept in separate parallel arrays,
+ * so an entry costs no more than its slots in them, and looping over every
+ * position reads contiguous memory. Entries are found by id through an
+ * open-addressing table of indices into these arrays.
+ * <p>
+ * Entries are kept densely packed at indices 0 to {@link #size()} - 1. Removing
+ * an entry moves the last entry into its index, so indices are only stable
+ * while the store is not modified.
+ *
+ * @param <T> the type of objects in the store
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class PositionStore<T> {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] ids;
+    private Object[] objects;
+    private double[] xs;
+    private double[] ys;
+    private int size;
+
+    // index + 1 of the entry with each id, 0 marking an empty slot
+    private int[] table;
+    private int mask;
+
+    /**
+     * Create a new empty store.
+     */
+    public PositionStore() {
+        ids = new long[MIN_CAPACITY];
+        objects = new Object[MIN_CAPACITY];
+        xs = new double[MIN_CAPACITY];
+        ys = new double[MIN_CAPACITY];
+        table = new int[MIN_CAPACITY * 2];
+        mask = table.length - 1;
+    }
+
+    /**
+     * Get the slot of the table an id would be in, if there were no collisions.
+     */
+    private int home(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Find the slot of the table holding an id.
+     *
+     * @return the slot, or -1 if the id is not in the store
+     */
+    private int slotOf(long id) {
+        for (int i = home(id); table[i] != 0; i = (i + 1) & mask) {
+            if (ids[table[i] - 1] == id) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Get the index of the entry with the given id.
+     *
+     * @param id the id to look up
+     * @return the index of the entry, or -1 if there is none
+     */
+    public int indexOf(long id) {
+        int slot = slotOf(id);
+        return slot < 0 ? -1 : table[slot] - 1;
+    }
+
+    /**
+     * Add an entry, or move the entry with the same id and replace its object.
+     *
+     * @param id the id of the entry
+     * @param object the object of the entry
+     * @param x the x coordinate of the entry
+     * @param y the y coordinate of the entry
+     * @return the index of the entry
+     */
+    public int put(long id, T object, double x, double y) {
+        int index = indexOf(id);
+        if (index < 0) {
+            if (size == ids.length) {
+                grow();
+            }
+            index = size++;
+            ids[index] = id;
+            int i = home(id);
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = index + 1;
+        }
+        objects[index] = object;
+        xs[index] = x;
+        ys[index] = y;
+        return index;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        objects = Arrays.copyOf(objects, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        // Keep the table at most half full so that probe sequences stay short
+        table = new int[capacity * 2];
+        mask = table.length - 1;
+        for (int index = 0; index < size; index++) {
+            int i = home(ids[index]);
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = index + 1;
+        }
+    }
+
+    /**
+     * Remove the entry with the given id.
+     *
+     * @param id the id of the entry to remove
+     * @return whether there was an entry with the id
+     */
+    public boolean remove(long id) {
+        int gap = slotOf(id);
+        if (gap < 0) return false;
+        int index = table[gap] - 1;
+        table[gap] = 0;
+        // Shift later slots of the probe sequence back into the gap, so that
+        // lookups never stop early at it
+        for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            if (((i - home(ids[table[i] - 1])) & mask) >= ((i - gap) & mask)) {
+                table[gap] = table[i];
+                table[i] = 0;
+                gap = i;
+            }
+        }
+        // Move the last entry into the removed one's index
+        int last = --size;
+        if (index != last) {
+            ids[index] = ids[last];
+            objects[index] = objects[last];
+            xs[index] = xs[last];
+            ys[index] = ys[last];
+            table[slotOf(ids[index])] = index + 1;
+        }
+        objects[last] = null;
+        return true;
+    }
+
+    /**
+     * Get the number of entries in this store.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the id of the entry at an index.
+     *
+     * @param index the index of the entry
+     * @return the id of the entry
+     */
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Get the object of the entry at an index.
+     *
+     * @param index the index of the entry
+     * @return the object of the entry
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) objects[index];
+    }
+
+    /**
+     * Get the x coordinate of the entry at an index.
+     *
+     * @param index the index of the entry
+     * @return the x coordinate of the entry
+     */
+    public double getX(int index) {
+        return xs[index];
+    }
+
+    /**
+     * Get the y coordinate of the entry at an index.
+     *
+     * @param index the index of the entry
+     * @return the y coordinate of the entry
+     */
+    public double getY(int index) {
+        return ys[index];
+    }
+}
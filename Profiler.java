@@ -0,0 +1,328 @@
+import greenfoot.*;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A per-frame profiler that records how long each phase of a frame takes.
+ * <p>
+ * Phases are timed by surrounding them with calls to {@link #begin} and
+ * {@link #end} with the same name. Phases begun while another is running are
+ * shown nested underneath it. Phases are only timed between
+ * {@link #beginFrame} and {@link #endFrame}, so that work done outside of
+ * frames, such as rendering a world while constructing it, is left out. At
+ * the end of every frame, {@link #endFrame} records the time of each phase,
+ * the number of sprites on each {@link Layer}, and the number of bytes
+ * allocated by the main thread. The last {@link #SAMPLE_COUNT} frames are
+ * kept so that rolling percentiles can be calculated.
+ * <p>
+ * Press F3 to toggle an overlay showing these percentiles, and press F4 to
+ * dump every recorded frame to a CSV file in the profiles directory.
+ *
+ * @author Martin Baldwin
+ * @version June 2024
+ */
+public class Profiler {
+    // Don't let anyone instantiate this class
+    private Profiler() {}
+
+    /** The number of frames to keep samples for, one minute at 60 fps. */
+    public static final int SAMPLE_COUNT = 3600;
+
+    // The number of frames between updates of the overlay text
+    private static final int OVERLAY_REFRESH_FRAMES = 30;
+    private static final String OVERLAY_KEY = "f3";
+    private static final String DUMP_KEY = "f4";
+    private static final Color OVERLAY_COLOR = new Color(0, 0, 0, 160);
+
+    /**
+     * A rolling series of samples of a single measurement, one per frame.
+     *
+     * @author Martin Baldwin
+     * @version June 2024
+     */
+    private static class Series {
+        public final String name;
+        public final int depth;
+        public final long[] samples;
+        // The value accumulated so far in the current frame
+        public long current;
+        public long start;
+
+        public Series(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+            samples = new long[SAMPLE_COUNT];
+        }
+    }
+
+    // Timed phases in the order they were first begun
+    private static final Map<String, Series> phases = new LinkedHashMap<>();
+    private static final Series frames = new Series("frame", 0);
+    private static final Series allocations = new Series("alloc", 0);
+    private static final Map<Layer, Series> layerCounts = new EnumMap<>(Layer.class);
+    static {
+        for (Layer layer : Layer.values()) {
+            layerCounts.put(layer, new Series(layer.name().toLowerCase(), 0));
+        }
+    }
+
+    private static final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private static boolean inFrame = false;
+    private static int openPhases = 0;
+    private static int nextSample = 0;
+    private static int sampleCount = 0;
+    private static long lastFrameTime = 0;
+    private static long lastAllocatedBytes = -1;
+
+    private static boolean overlayVisible = false;
+    private static boolean overlayKeyDown = false;
+    private static boolean dumpKeyDown = false;
+    private static Text overlay;
+    private static int framesUntilRefresh = 0;
+
+    /**
+     * Start timing a new frame.
+     */
+    public static void beginFrame() {
+        inFrame = true;
+    }
+
+    /**
+     * Start timing a phase of the current frame.
+     *
+     * @param name the name of the phase
+     */
+    public static void begin(String name) {
+        if (!inFrame) return;
+        Series phase = phases.get(name);
+        if (phase == null) {
+            phase = new Series(name, openPhases);
+            phases.put(name, phase);
+        }
+        openPhases++;
+        phase.start = System.nanoTime();
+    }
+
+    /**
+     * Stop timing a phase of the current frame. A phase may be timed several
+     * times in one frame, in which case its times are added together.
+     *
+     * @param name the name of the phase, as given to {@link #begin}
+     */
+    public static void end(String name) {
+        if (!inFrame) return;
+        long now = System.nanoTime();
+        Series phase = phases.get(name);
+        if (phase == null) return;
+        phase.current += now - phase.start;
+        openPhases--;
+    }
+
+    /**
+     * Record all measurements of the current frame and start a new one. This
+     * also handles the keys that toggle the overlay and dump recorded frames.
+     *
+     * @param world the world that was just acted
+     */
+    public static void endFrame(PixelWorld world) {
+        long now = System.nanoTime();
+        frames.current = lastFrameTime == 0 ? 0 : now - lastFrameTime;
+        lastFrameTime = now;
+
+        long allocatedBytes = getAllocatedBytes();
+        allocations.current = lastAllocatedBytes < 0 ? 0 : allocatedBytes - lastAllocatedBytes;
+        lastAllocatedBytes = allocatedBytes;
+
+        for (Layer layer : Layer.values()) {
+            layerCounts.get(layer).current = world.getSpritesByLayer(layer).size();
+        }
+
+        commit(frames);
+        commit(allocations);
+        for (Series phase : phases.values()) {
+            commit(phase);
+        }
+        for (Series count : layerCounts.values()) {
+            commit(count);
+        }
+        nextSample = (nextSample + 1) % SAMPLE_COUNT;
+        sampleCount = Math.min(sampleCount + 1, SAMPLE_COUNT);
+        openPhases = 0;
+        inFrame = false;
+
+        if (Greenfoot.isKeyDown(OVERLAY_KEY) && !overlayKeyDown) {
+            overlayVisible = !overlayVisible;
+            framesUntilRefresh = 0;
+        }
+        overlayKeyDown = Greenfoot.isKeyDown(OVERLAY_KEY);
+        if (Greenfoot.isKeyDown(DUMP_KEY) && !dumpKeyDown) {
+            dumpCsv();
+        }
+        dumpKeyDown = Greenfoot.isKeyDown(DUMP_KEY);
+    }
+
+    private static void commit(Series series) {
+        series.samples[nextSample] = series.current;
+        series.current = 0;
+    }
+
+    /**
+     * Draw the profiler overlay onto the given canvas, if it is visible.
+     *
+     * @param canvas the image to draw the overlay onto
+     */
+    public static void drawOverlay(GreenfootImage canvas) {
+        if (!overlayVisible || sampleCount == 0) return;
+        if (framesUntilRefresh-- <= 0) {
+            if (overlay == null) {
+                overlay = new Text(createOverlayContent(), Text.AnchorX.LEFT, Text.AnchorY.TOP, OVERLAY_COLOR);
+                overlay.setScreenPos(1, 1);
+            } else {
+                overlay.setContent(createOverlayContent());
+            }
+            framesUntilRefresh = OVERLAY_REFRESH_FRAMES;
+        }
+        overlay.render(canvas);
+    }
+
+    private static String createOverlayContent() {
+        StringBuilder content = new StringBuilder();
+        content.append("ms          p50    p95    p99\n");
+        appendTimes(content, frames);
+        for (Series phase : phases.values()) {
+            appendTimes(content, phase);
+        }
+
+        double bytesPerFrame = getPercentile(getSortedSamples(allocations), 50);
+        double framesPerSecond = 1e9 / Math.max(1, getPercentile(getSortedSamples(frames), 50));
+        content.append(String.format("alloc %.1fkb/f %.1fmb/s\n",
+                                     bytesPerFrame / 1024, bytesPerFrame * framesPerSecond / 1024 / 1024));
+
+        int i = 0;
+        for (Series count : layerCounts.values()) {
+            content.append(count.name.replace("sprack_", "")).append(' ').append(count.samples[getLastSample()]);
+            content.append(++i % 3 == 0 ? '\n' : ' ');
+        }
+        return content.toString().trim();
+    }
+
+    private static void appendTimes(StringBuilder content, Series series) {
+        String name = " ".repeat(series.depth) + series.name;
+        long[] sorted = getSortedSamples(series);
+        content.append(String.format("%-10s %6.2f %6.2f %6.2f\n", name,
+                                     getPercentile(sorted, 50) / 1e6,
+                                     getPercentile(sorted, 95) / 1e6,
+                                     getPercentile(sorted, 99) / 1e6));
+    }
+
+    private static int getLastSample() {
+        return (nextSample + SAMPLE_COUNT - 1) % SAMPLE_COUNT;
+    }
+
+    private static long[] getSortedSamples(Series series) {
+        long[] sorted = Arrays.copyOf(series.samples, sampleCount);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Get a percentile of sorted samples, using the nearest rank method.
+     *
+     * @param sorted the samples, in ascending order
+     * @param percentile the percentile to find, in the range [0, 100]
+     * @return the sample at the given percentile, or 0 if there are none
+     */
+    private static long getPercentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Get a percentile of the recorded times of a phase.
+     *
+     * @param name the name of the phase, or "frame" for the time between frames
+     * @param percentile the percentile to find, in the range [0, 100]
+     * @return the time at the given percentile, in nanoseconds, or 0 if the
+     *         phase has never been timed
+     */
+    public static long getPercentile(String name, double percentile) {
+        Series series = name.equals(frames.name) ? frames : phases.get(name);
+        if (series == null) return 0;
+        return getPercentile(getSortedSamples(series), percentile);
+    }
+
+    /**
+     * Get the number of bytes allocated by the current thread so far, which
+     * is the thread that acts the world. Background threads are not counted.
+     *
+     * @return the number of bytes, or 0 if this is not supported
+     */
+    private static long getAllocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return 0;
+        long id = Thread.currentThread().getId();
+        return Math.max(0, ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(id));
+    }
+
+    /**
+     * Write every recorded frame to a new CSV file in the profiles directory,
+     * oldest first. Times are in nanoseconds.
+     */
+    public static void dumpCsv() {
+        File directory = new File("profiles");
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        dumpCsv("profiles/profile_" + System.currentTimeMillis() + ".csv");
+    }
+
+    /**
+     * Write every recorded frame to a CSV file, oldest first. Times are in
+     * nanoseconds.
+     *
+     * @param fileName the name of the file to write
+     */
+    public static void dumpCsv(String fileName) {
+        PrintWriter fileOutput;
+        try {
+            fileOutput = new PrintWriter(new FileWriter(fileName));
+        } catch (IOException e) {
+            System.out.println(e);
+            return;
+        }
+        // header
+        fileOutput.print("frame_ns");
+        for (Series phase : phases.values()) {
+            fileOutput.print("," + phase.name + "_ns");
+        }
+        fileOutput.print(",alloc_bytes");
+        for (Series count : layerCounts.values()) {
+            fileOutput.print("," + count.name);
+        }
+        fileOutput.println();
+        // one row per frame
+        int first = (nextSample - sampleCount + SAMPLE_COUNT) % SAMPLE_COUNT;
+        for (int i = 0; i < sampleCount; i++) {
+            int sample = (first + i) % SAMPLE_COUNT;
+            fileOutput.print(frames.samples[sample]);
+            for (Series phase : phases.values()) {
+                fileOutput.print("," + phase.samples[sample]);
+            }
+            fileOutput.print("," + allocations.samples[sample]);
+            for (Series count : layerCounts.values()) {
+                fileOutput.print("," + count.samples[sample]);
+            }
+            fileOutput.println();
+        }
+        fileOutput.close();
+        System.out.println("Saved profile to " + fileName);
+    }
+}
@@ -0,0 +1,159 @@
+import java.io.File;
+
+/**
+ * A large square of world grid tiles whose persisted state is saved to its
+ * own file by {@link WorldData}.
+ * <p>
+ * A region holds the modified {@link FeatureData}, stored items, and stored
+ * entities positioned on its tiles. Whenever any of them change, the region is
+ * marked dirty, and only dirty regions are written when the world is saved.
+ * <p>
+ * Regions are loaded from their files lazily, the first time anything within
+ * them is needed, so only the regions the player has visited are ever read.
+ * Their size is a multiple of {@link Chunk#SIZE}, so every chunk lies within
+ * a single region.
+ *
+ * @author Lucas Fu
+ * @version June 2024
+ */
+public class Region {
+    /** The side length of a region, in grid tiles. */
+    public static final int SIZE = 32;
+
+    /** The x coordinate of this region, in region coordinates. */
+    public final int x;
+    /** The y coordinate of this region, in region coordinates. */
+    public final int y;
+
+    private final Long2ObjectMap<FeatureData> features;
+    // the ids of items and entities, whose positions are kept by WorldData
+    private final LongHashSet items;
+    private final LongHashSet entities;
+    private boolean dirty;
+
+    /**
+     * Create a new empty region at the given region coordinates.
+     *
+     * @param x the x coordinate, in region coordinates
+     * @param y the y coordinate, in region coordinates
+     */
+    public Region(int x, int y) {
+        this.x = x;
+        this.y = y;
+        features = new Long2ObjectMap<>();
+        items = new LongHashSet();
+        entities = new LongHashSet();
+        dirty = false;
+    }
+
+    /**
+     * Get the region coordinate containing the given grid coordinate.
+     *
+     * @param gridCoord the grid coordinate, which may contain decimals
+     * @return the region coordinate
+     */
+    public static int toRegion(double gridCoord) {
+        return Math.floorDiv((int) Math.floor(gridCoord), SIZE);
+    }
+
+    /**
+     * Get the key of the region containing the given grid position.
+     *
+     * @param gridPos the grid position, which may contain decimals
+     * @return the packed key of the region containing the position
+     */
+    public static long keyOf(Vector2 gridPos) {
+        return Chunk.key(toRegion(gridPos.x), toRegion(gridPos.y));
+    }
+
+    /**
+     * Get the directory containing the region files of the world with the
+     * given seed.
+     *
+     * @param seed the seed of the world
+     * @return the region directory, which may not exist
+     */
+    public static File getDirectory(long seed) {
+        return new File(WorldData.getSaveDirectory(), "regions_" + seed);
+    }
+
+    /**
+     * Get the file of a region of the world with the given seed.
+     *
+     * @param seed the seed of the world
+     * @param x the x coordinate of the region, in region coordinates
+     * @param y the y coordinate of the region, in region coordinates
+     * @return the region file, which may not exist
+     */
+    public static File getFile(long seed, int x, int y) {
+        return new File(getDirectory(seed), "r." + x + "." + y + ".dat");
+    }
+
+    /**
+     * Get the packed key of this region.
+     *
+     * @return the key
+     */
+    public long key() {
+        return Chunk.key(x, y);
+    }
+
+    /**
+     * Get the modified features in this region, mapped by id.
+     *
+     * @return the modified features in this region
+     */
+    public Long2ObjectMap<FeatureData> getFeatures() {
+        return features;
+    }
+
+    /**
+     * Get the ids of the stored items in this region.
+     *
+     * @return the ids of the stored items in this region
+     */
+    public LongHashSet getItems() {
+        return items;
+    }
+
+    /**
+     * Get the ids of the stored entities in this region.
+     *
+     * @return the ids of the stored entities in this region
+     */
+    public LongHashSet getEntities() {
+        return entities;
+    }
+
+    /**
+     * Check if this region holds nothing to save.
+     *
+     * @return whether this region is empty
+     */
+    public boolean isEmpty() {
+        return features.isEmpty() && items.isEmpty() && entities.isEmpty();
+    }
+
+    /**
+     * Mark this region as changed since it was last saved.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Mark this region as saved.
+     */
+    public void markClean() {
+        dirty = false;
+    }
+
+    /**
+     * Check if this region has changed since it was last saved.
+     *
+     * @return whether this region is dirty
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Constants and streaming readers and writers for the binary world save
+ * format.
+ * <p>
+ * A save file starts with {@link #MAGIC} and {@link #VERSION}, followed by a
+ * sequence of sections. Each section is a one byte tag, the length of its
+ * contents in bytes, and then its contents. Readers skip sections with tags
+ * they do not know, so new sections can be added without breaking old
+ * readers. The file ends with a section tagged {@link #END}.
+ * <p>
+ * All numbers are big-endian, and strings are written as their length in
+ * bytes followed by their UTF-8 encoding.
+ * <p>
+ * Since version 2, a world's main save file only holds its header, stats, and
+ * waypoints. Features, items, and entities are saved in the file of the
+ * {@link Region} they are in, and feature records include their grid
+ * position.
+ * <p>
+ * Since version 3, the positions of stored items and entities are saved as
+ * doubles instead of being truncated to integers, so they are loaded back into
+ * the region they were saved in.
+ * <p>
+ * Version 4 is the first version written since world generation switched to
+ * {@link HashRandom}. Modified features from older versions belong to features
+ * that are no longer generated on their tiles, so they are not loaded.
+ *
+ * @author Lucas Fu
+ * @version June 2024
+ */
+public class SaveFile {
+    // Don't let anyone instantiate this class
+    private SaveFile() {}
+
+    /** The first four bytes of every save file, "SPRK". */
+    public static final int MAGIC = 0x5350524B;
+    /** The current version of the save format. */
+    public static final int VERSION = 4;
+
+    /** The tag of the section that marks the end of a save file. */
+    public static final byte END = 0;
+    /** The tag of the section containing the seed and player state. */
+    public static final byte HEADER = 1;
+    /** The tag of the section containing the player's stats. */
+    public static final byte STATS = 2;
+    /** The tag of the section containing the waypoints. */
+    public static final byte WAYPOINTS = 3;
+    /** The tag of the section containing modified {@link FeatureData}. */
+    public static final byte FEATURES = 4;
+    /** The tag of the section containing stored items. */
+    public static final byte ITEMS = 5;
+    /** The tag of the section containing stored entities. */
+    public static final byte ENTITIES = 6;
+    /**
+     * The tag of the section containing modified {@link FeatureData} without
+     * positions, which was only written before version 4 and is skipped.
+     */
+    public static final byte UNPLACED_FEATURES = 7;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Reads a save file through a buffered file channel.
+     *
+     * @author Lucas Fu
+     * @version June 2024
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int version;
+        private long sectionEnd;
+
+        /**
+         * Open a save file for reading and check its header.
+         *
+         * @param file the file to read
+         * @throws IOException if the file cannot be read, or is not a save
+         *                     file of a supported version
+         */
+        public Reader(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.flip();
+            try {
+                if (readInt() != MAGIC) {
+                    throw new IOException(file + " is not a save file");
+                }
+                version = readInt();
+                if (version < 1 || version > VERSION) {
+                    throw new IOException(file + " has unsupported save version " + version);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Get the version of the save format that the file was written with.
+         *
+         * @return the save format version
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Skip the rest of the current section, if any, and read the tag of
+         * the next section.
+         *
+         * @return the tag of the next section
+         * @throws IOException if the file cannot be read
+         */
+        public byte nextSection() throws IOException {
+            long position = getPosition();
+            if (sectionEnd > position) {
+                skip(sectionEnd - position);
+            }
+            byte tag = readByte();
+            if (tag == END) return END;
+            int length = readInt();
+            sectionEnd = getPosition() + length;
+            return tag;
+        }
+
+        private long getPosition() throws IOException {
+            return channel.position() - buffer.remaining();
+        }
+
+        private void skip(long bytes) throws IOException {
+            if (bytes <= buffer.remaining()) {
+                buffer.position(buffer.position() + (int) bytes);
+                return;
+            }
+            channel.position(getPosition() + bytes);
+            buffer.clear();
+            buffer.flip();
+        }
+
+        /**
+         * Make sure the buffer holds at least the given number of bytes.
+         */
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of save file");
+                }
+            }
+            buffer.flip();
+        }
+
+        public byte readByte() throws IOException {
+            require(Byte.BYTES);
+            return buffer.get();
+        }
+
+        public boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        public int readInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        public long readLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        public double readDouble() throws IOException {
+            require(Double.BYTES);
+            return buffer.getDouble();
+        }
+
+        public String readString() throws IOException {
+            int length = readInt();
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                require(1);
+                int count = Math.min(length - read, buffer.remaining());
+                buffer.get(bytes, read, count);
+                read += count;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes a save file through a buffered file channel.
+     *
+     * @author Lucas Fu
+     * @version June 2024
+     */
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        // The file position of the length of the current section
+        private long sectionStart = -1;
+
+        /**
+         * Create or replace a save file and write its header.
+         *
+         * @param file the file to write
+         * @throws IOException if the file cannot be written
+         */
+        public Writer(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            writeInt(MAGIC);
+            writeInt(VERSION);
+        }
+
+        /**
+         * Start a new section, ending the current one if needed.
+         *
+         * @param tag the tag of the section
+         * @throws IOException if the file cannot be written
+         */
+        public void beginSection(byte tag) throws IOException {
+            endSection();
+            writeByte(tag);
+            sectionStart = getPosition();
+            // The length is filled in once the section ends
+            writeInt(0);
+        }
+
+        /**
+         * End the current section by filling in its length.
+         */
+        private void endSection() throws IOException {
+            if (sectionStart < 0) return;
+            long length = getPosition() - sectionStart - Integer.BYTES;
+            flush();
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+            lengthBuffer.putInt((int) length).flip();
+            while (lengthBuffer.hasRemaining()) {
+                channel.write(lengthBuffer, sectionStart + lengthBuffer.position());
+            }
+            sectionStart = -1;
+        }
+
+        private long getPosition() throws IOException {
+            return channel.position() + buffer.position();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Make sure the buffer has room for at least the given number of bytes.
+         */
+        private void reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        public void writeByte(byte value) throws IOException {
+            reserve(Byte.BYTES);
+            buffer.put(value);
+        }
+
+        public void writeBoolean(boolean value) throws IOException {
+            writeByte((byte) (value ? 1 : 0));
+        }
+
+        public void writeInt(int value) throws IOException {
+            reserve(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        public void writeLong(long value) throws IOException {
+            reserve(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        public void writeDouble(double value) throws IOException {
+            reserve(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        public void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            int written = 0;
+            while (written < bytes.length) {
+                reserve(1);
+                int count = Math.min(bytes.length - written, buffer.remaining());
+                buffer.put(bytes, written, count);
+                written += count;
+            }
+        }
+
+        /**
+         * End the file and close it.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                endSection();
+                writeByte(END);
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
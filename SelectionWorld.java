@@ -1,4 +1,5 @@
 import java.io.File;
+import java.util.Arrays;
 
 import greenfoot.Color;
 import greenfoot.Greenfoot;
@@ -22,17 +23,18 @@ public class SelectionWorld extends PixelWorld {
 
     public SelectionWorld(GifSprite panorama) {
         super(SprackWorld.WORLD_WIDTH, SprackWorld.WORLD_HEIGHT);
-        File path = new File("saves");
+        File path = WorldData.getSaveDirectory();
         // Create saves directory if it doesn't exist
         if (!path.exists()) {
             path.mkdirs();
         }
-        // Get all existing save files
-        String[] worldNames = path.list();
-        worldSeeds = new long[worldNames.length];
-        for (int i = 0; i < worldNames.length; i++) {
-            worldSeeds[i] = Long.valueOf(worldNames[i].substring(5, worldNames[i].length() - 4));
-        }
+        // Get all existing save files, a world may briefly have both a binary
+        // and an older CSV save
+        worldSeeds = Arrays.stream(path.list())
+            .filter(name -> name.startsWith("save_") && (name.endsWith(".dat") || name.endsWith(".csv")))
+            .mapToLong(name -> Long.valueOf(name.substring(5, name.length() - 4)))
+            .distinct()
+            .toArray();
         // Create buttons to allow choosing an existing world to open
         buttons = new Button[Math.min(3, worldSeeds.length)];
         for (int i = 0; i < buttons.length; i++) {
@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A uniform spatial hash grid that bins {@link WorldObject}s by the cell of
+ * the world XZ plane that their position falls in.
+ * <p>
+ * Range queries only visit the cells overlapping the square that bounds the
+ * query circle, instead of every object in the world. Objects must be
+ * inserted when added to the world, removed when removed from the world, and
+ * {@link #update updated} whenever their world position changes.
+ *
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class SpatialGrid {
+    /** The side length of a grid cell, in world units. */
+    public static final int CELL_SIZE = 40;
+
+    // All non-empty cells mapped by their packed cell coordinates
+    private final Map<Long, List<WorldObject>> cells;
+    // The packed coordinates of the cell each object is currently binned in
+    private final Map<WorldObject, Long> objectCells;
+
+    /**
+     * Create a new empty SpatialGrid.
+     */
+    public SpatialGrid() {
+        cells = new HashMap<>();
+        objectCells = new IdentityHashMap<>();
+    }
+
+    /**
+     * Get the cell coordinate along one axis containing the given world
+     * coordinate.
+     *
+     * @param worldCoord the world coordinate
+     * @return the cell coordinate
+     */
+    private static int toCell(double worldCoord) {
+        return (int) Math.floor(worldCoord / CELL_SIZE);
+    }
+
+    /**
+     * Pack a pair of cell coordinates into a single key, the same way
+     * {@link TileKey} packs grid coordinates.
+     *
+     * @param cellX the cell x coordinate
+     * @param cellZ the cell z coordinate
+     * @return the packed key
+     */
+    private static long toKey(int cellX, int cellZ) {
+        return TileKey.of(cellX, cellZ);
+    }
+
+    /**
+     * Insert an object into the cell containing its current world position.
+     * <p>
+     * Inserting an object that is already in this grid only updates its cell.
+     *
+     * @param object the object to insert
+     */
+    public void insert(WorldObject object) {
+        if (objectCells.containsKey(object)) {
+            update(object);
+            return;
+        }
+        long key = toKey(toCell(object.getWorldX()), toCell(object.getWorldZ()));
+        addToCell(key, object);
+        objectCells.put(object, key);
+    }
+
+    /**
+     * Remove an object from this grid. Does nothing if the object is not in
+     * this grid.
+     *
+     * @param object the object to remove
+     */
+    public void remove(WorldObject object) {
+        Long key = objectCells.remove(object);
+        if (key != null) {
+            removeFromCell(key, object);
+        }
+    }
+
+    /**
+     * Move an object to a new cell if its world position no longer falls in
+     * the cell it is currently binned in. Does nothing if the object is not in
+     * this grid.
+     *
+     * @param object the object whose position has changed
+     */
+    public void update(WorldObject object) {
+        Long oldKey = objectCells.get(object);
+        if (oldKey == null) return;
+        long newKey = toKey(toCell(object.getWorldX()), toCell(object.getWorldZ()));
+        if (oldKey == newKey) return;
+        removeFromCell(oldKey, object);
+        addToCell(newKey, object);
+        objectCells.put(object, newKey);
+    }
+
+    /**
+     * Remove all objects from this grid.
+     */
+    public void clear() {
+        cells.clear();
+        objectCells.clear();
+    }
+
+    /**
+     * Get all objects of the given class whose world position is strictly
+     * within the given range of a center point.
+     *
+     * @param center the center point
+     * @param range the range
+     * @param cls the class of objects to look for
+     * @return a list of objects of the given class within the range
+     */
+    public <T> List<T> getInRange(Vector3 center, double range, Class<T> cls) {
+        return getInRange(center, range, cls, false);
+    }
+
+    /**
+     * Get all objects of the given class whose world position is within the
+     * given range of a center point, optionally including objects exactly at
+     * the range.
+     *
+     * @param center the center point
+     * @param range the range
+     * @param cls the class of objects to look for
+     * @param inclusive whether objects exactly at the range are included
+     * @return a list of objects of the given class within the range
+     */
+    public <T> List<T> getInRange(Vector3 center, double range, Class<T> cls, boolean inclusive) {
+        List<T> result = new ArrayList<>();
+        final double rangeSq = range * range;
+        final int minX = toCell(center.x - range);
+        final int maxX = toCell(center.x + range);
+        final int minZ = toCell(center.z - range);
+        final int maxZ = toCell(center.z + range);
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                List<WorldObject> cell = cells.get(toKey(cellX, cellZ));
+                if (cell == null) continue;
+                for (WorldObject object : cell) {
+                    if (!cls.isInstance(object)) continue;
+                    double dx = object.getWorldX() - center.x;
+                    double dy = object.getWorldY() - center.y;
+                    double dz = object.getWorldZ() - center.z;
+                    double distSq = dx * dx + dy * dy + dz * dz;
+                    if (distSq < rangeSq || (inclusive && distSq == rangeSq)) {
+                        result.add(cls.cast(object));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of objects in this grid.
+     *
+     * @return the number of objects
+     */
+    public int size() {
+        return objectCells.size();
+    }
+
+    private void addToCell(long key, WorldObject object) {
+        List<WorldObject> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>();
+            cells.put(key, cell);
+        }
+        cell.add(object);
+    }
+
+    private void removeFromCell(long key, WorldObject object) {
+        List<WorldObject> cell = cells.get(key);
+        if (cell == null) return;
+        cell.remove(object);
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+}
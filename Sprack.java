@@ -1,4 +1,6 @@
 import greenfoot.*;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
 
 /**
  * A sprite stack (Sprack) is a sprite made up of multiple layers of 2D images,
@@ -24,15 +26,24 @@ import greenfoot.*;
  * @see SprackView
  */
 public abstract class Sprack extends Sprite implements WorldObject {
+    private static final Color SHADOW_COLOR = new Color(0, 0, 0, 64);
+
     // The current looping animation of this Sprack
     private Animation loopingAnimation;
     // The current one-time animation of this Sprack, or null if none
     private Animation oneTimeAnimation;
 
+    private double worldX;
+    private double worldY;
+    private double worldZ;
+    // The world position as a vector, created on request, or null if outdated
     private Vector3 worldPos;
     private double rotation;
     private int transparency;
     private boolean showShadow;
+    // Whether cull has already advanced the animations and updated the screen
+    // position this frame
+    private boolean prepared;
 
     /**
      * Create a new Sprack with the given fixed sheet name.
@@ -85,7 +96,6 @@ public abstract class Sprack extends Sprite implements WorldObject {
         super(layer);
         loopingAnimation = sheetAnimation;
         oneTimeAnimation = null;
-        worldPos = new Vector3();
         transparency = 255;
         showShadow = false;
     }
@@ -124,7 +134,13 @@ public abstract class Sprack extends Sprite implements WorldObject {
      */
     @Override
     public void setWorldPos(double x, double y, double z) {
-        worldPos = new Vector3(x, y, z);
+        worldX = x;
+        worldY = y;
+        worldZ = z;
+        worldPos = null;
+        if (getWorld() != null) {
+            getWorld().updateSpatialIndex(this);
+        }
     }
 
     /**
@@ -137,6 +153,7 @@ public abstract class Sprack extends Sprite implements WorldObject {
      */
     @Override
     public void setWorldPos(Vector3 position) {
+        setWorldPos(position.x, position.y, position.z);
         worldPos = position;
     }
 
@@ -201,41 +218,97 @@ public abstract class Sprack extends Sprite implements WorldObject {
         return oneTimeAnimation;
     }
 
-    @Override
-    public void render(GreenfootImage canvas) {
+    /**
+     * Advance the looping animation and one-time animation by one frame.
+     */
+    private void advanceAnimations() {
         loopingAnimation.update();
-        Animation currentAnimation = loopingAnimation;
         if (oneTimeAnimation != null) {
             oneTimeAnimation.update();
             // Return to the looping animation once the one-time animation is over
             if (oneTimeAnimation.hasLooped()) {
                 oneTimeAnimation = null;
-            } else {
-                currentAnimation = oneTimeAnimation;
             }
         }
+    }
 
+    /**
+     * Get the SprackView of the current frame of the current animation.
+     *
+     * @return the current SprackView, or null if there is none
+     */
+    private SprackView getCurrentView() {
+        Animation currentAnimation = oneTimeAnimation != null ? oneTimeAnimation : loopingAnimation;
         if (currentAnimation.getCurrentName() == null) {
-            return;
+            return null;
+        }
+        return SprackView.getView(currentAnimation.getCurrentName());
+    }
+
+    /**
+     * Advance the animations of this Sprack and check whether its bounding
+     * circle (see {@link SprackView#getBoundingRadius}) is outside the canvas.
+     * <p>
+     * Animations keep playing while the Sprack is culled, and its screen
+     * position is still updated.
+     *
+     * @param width the width of the canvas
+     * @param height the height of the canvas
+     * @return whether this Sprack is culled this frame
+     */
+    @Override
+    public boolean cull(int width, int height) {
+        advanceAnimations();
+        SprackView view = getCurrentView();
+        if (view == null) {
+            return true;
+        }
+
+        CameraTransform camera = Camera.getTransform();
+        double scale = camera.getZoom();
+        double screenX = camera.getScreenX(worldX, worldZ, width);
+        double screenY = camera.getScreenY(worldX, worldY, worldZ, height);
+        setScreenPos(screenX, screenY);
+
+        // Leave a pixel or two for rounding to the nearest scale bucket
+        double radius = view.getBoundingRadius() * scale + 2;
+        double centerY = screenY - view.getLayerCount() * scale / 2;
+        // The shadow is drawn on the ground, below a Sprack in the air
+        double shadowDrop = showShadow ? Math.max(worldY * scale, 0) : 0;
+        if (screenX + radius < 0 || screenX - radius >= width
+            || centerY + radius + shadowDrop < 0 || centerY - radius >= height) {
+            return true;
         }
-        SprackView view = SprackView.getView(currentAnimation.getCurrentName());
+        // render is called next, which can skip the work done here
+        prepared = true;
+        return false;
+    }
+
+    @Override
+    public void render(GreenfootImage canvas) {
+        boolean wasPrepared = prepared;
+        prepared = false;
+        if (!wasPrepared) {
+            advanceAnimations();
+        }
+
+        SprackView view = getCurrentView();
         if (view == null) {
             return;
         }
 
         // Update screen position, rotated around zoomed camera position
-        double scale = Camera.getZoom();
-        double offsetX = (worldPos.x - Camera.getX()) * scale;
-        double offsetY = (worldPos.y - Camera.getY()) * scale;
-        double offsetZ = (worldPos.z - Camera.getZ()) * scale;
-        double screenRad = Math.toRadians(-Camera.getRotation());
-        double screenX = getWorld().getWidth() / 2 + offsetX * Math.cos(screenRad) - offsetZ * Math.sin(screenRad);
-        double screenY = getWorld().getHeight() / 2 + offsetX * Math.sin(screenRad) + offsetZ * Math.cos(screenRad);
-        screenY -= offsetY;
-        setScreenPos(screenX, screenY);
+        CameraTransform camera = Camera.getTransform();
+        double scale = camera.getZoom();
+        if (!wasPrepared) {
+            setScreenPos(camera.getScreenX(worldX, worldZ, getWorld().getWidth()),
+                         camera.getScreenY(worldX, worldY, worldZ, getWorld().getHeight()));
+        }
+        double screenX = getScreenX();
+        double screenY = getScreenY();
 
         // Don't render if offscreen
-        double imageRotation = rotation - Camera.getRotation();
+        double imageRotation = rotation - camera.getRotation();
         int imageWidth = view.getTransformedImageWidth(imageRotation, scale);
         int imageHeight = view.getTransformedImageHeight(imageRotation, scale);
         int centerX = view.getCenterX(imageRotation, scale);
@@ -249,11 +322,11 @@ public abstract class Sprack extends Sprite implements WorldObject {
 
         // Draw shadow if shown
         if (showShadow) {
-            canvas.setColor(new Color(0, 0, 0, 64));
+            canvas.setColor(SHADOW_COLOR);
             int shadowWidth = view.getTransformedLayerWidth(imageRotation, scale);
             int shadowHeight = view.getTransformedLayerHeight(imageRotation, scale);
             int shadowX = (int) screenX - centerX + (imageWidth - shadowWidth) / 2;
-            int shadowY = (int) (screenY + worldPos.y * scale) - shadowHeight / 2;
+            int shadowY = (int) (screenY + worldY * scale) - shadowHeight / 2;
             canvas.fillOval(shadowX, shadowY, shadowWidth, shadowHeight);
         }
 
@@ -262,8 +335,31 @@ public abstract class Sprack extends Sprite implements WorldObject {
         if (image == null) {
             return;
         }
-        image.setTransparency(transparency);
-        canvas.drawImage(image, (int) screenX - centerX, (int) screenY - centerY);
+        drawImage(canvas, image, (int) screenX - centerX, (int) screenY - centerY, transparency);
+    }
+
+    /**
+     * Draw an image onto a canvas with the given transparency, without
+     * modifying the image, since SprackView images are shared.
+     *
+     * @param canvas the image to draw onto
+     * @param image the image to draw
+     * @param x the x position to draw the image at
+     * @param y the y position to draw the image at
+     * @param transparency the transparency to draw the image with, from 0 to 255
+     */
+    private static void drawImage(GreenfootImage canvas, GreenfootImage image, int x, int y, int transparency) {
+        if (transparency >= 255) {
+            canvas.drawImage(image, x, y);
+            return;
+        }
+        if (transparency <= 0) {
+            return;
+        }
+        Graphics2D graphics = canvas.getAwtImage().createGraphics();
+        graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, transparency / 255f));
+        graphics.drawImage(image.getAwtImage(), x, y, null);
+        graphics.dispose();
     }
 
     /**
@@ -273,7 +369,7 @@ public abstract class Sprack extends Sprite implements WorldObject {
      */
     @Override
     public double getWorldX() {
-        return worldPos.x;
+        return worldX;
     }
 
     /**
@@ -283,7 +379,7 @@ public abstract class Sprack extends Sprite implements WorldObject {
      */
     @Override
     public double getWorldY() {
-        return worldPos.y;
+        return worldY;
     }
 
     /**
@@ -293,7 +389,7 @@ public abstract class Sprack extends Sprite implements WorldObject {
      */
     @Override
     public double getWorldZ() {
-        return worldPos.z;
+        return worldZ;
     }
 
     /**
@@ -303,6 +399,9 @@ public abstract class Sprack extends Sprite implements WorldObject {
      */
     @Override
     public Vector3 getWorldPos() {
+        if (worldPos == null) {
+            worldPos = new Vector3(worldX, worldY, worldZ);
+        }
         return worldPos;
     }
 
@@ -318,12 +417,7 @@ public abstract class Sprack extends Sprite implements WorldObject {
 
     @Override
     public double getSortValue() {
-        double scale = Camera.getZoom();
-        double offsetX = (worldPos.x - Camera.getX()) * scale;
-        double offsetZ = (worldPos.z - Camera.getZ()) * scale;
-        double screenRad = Math.toRadians(-Camera.getRotation());
-        double screenY = getWorld().getHeight() / 2 + offsetX * Math.sin(screenRad) + offsetZ * Math.cos(screenRad);
-        return screenY;
+        return Camera.getTransform().getGroundScreenY(worldX, worldZ, getWorld().getHeight());
     }
 
     /**
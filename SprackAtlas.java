@@ -0,0 +1,386 @@
+import greenfoot.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A file on disk that stores every pre-rendered rotation frame of a single
+ * {@link SprackView}, so that the frames do not need to be rendered again on
+ * later launches.
+ * <p>
+ * The frames are packed one after another as raw ARGB pixels, after a header
+ * holding the size and center of each frame. Once complete, the file is
+ * memory-mapped, and frames are only copied out of it when they are requested.
+ * <p>
+ * Atlas files are named after a hash of everything that affects the rendered
+ * frames: the sheet image, its layer count and the SprackView cache settings.
+ * If any of these change, the old file no longer matches and a new one is
+ * created.
+ *
+ * @author Martin Baldwin
+ * @version June 2024
+ */
+public class SprackAtlas {
+    /** The directory all atlas files are stored in. */
+    public static final String CACHE_DIRECTORY = "cache/sprackview";
+
+    private static final int MAGIC = 0x53505241; // "SPRA"
+    private static final int VERSION = 1;
+    // The size of the file header and each frame's header entry, in bytes
+    private static final int HEADER_BYTES = 12;
+    private static final int FRAME_HEADER_BYTES = 24;
+
+    private final int[] widths;
+    private final int[] heights;
+    private final int[] centerXs;
+    private final int[] centerYs;
+    private final long[] offsets;
+    // The mapped contents of a complete atlas file, or null while creating one
+    private final MappedByteBuffer buffer;
+    // The file being written while creating an atlas, or null once complete
+    private final RandomAccessFile output;
+
+    /**
+     * Create an atlas with the given frame layout.
+     *
+     * @param widths the width of each frame
+     * @param heights the height of each frame
+     * @param centerXs the x offset of each frame's center
+     * @param centerYs the y offset of each frame's center
+     * @param offsets the position of each frame's pixels in the file, in bytes
+     * @param buffer the mapped contents of a complete file, or null
+     * @param output the file being written, or null
+     */
+    private SprackAtlas(int[] widths, int[] heights, int[] centerXs, int[] centerYs, long[] offsets,
+                        MappedByteBuffer buffer, RandomAccessFile output) {
+        this.widths = widths;
+        this.heights = heights;
+        this.centerXs = centerXs;
+        this.centerYs = centerYs;
+        this.offsets = offsets;
+        this.buffer = buffer;
+        this.output = output;
+    }
+
+    /**
+     * Compute the key identifying the frames rendered from a sheet with the
+     * given settings.
+     *
+     * @param sheetName the name of the sheet, without the file extension
+     * @param layerCount the number of layers in the sheet
+     * @param angleCount the number of rotation angles rendered
+     * @param cacheScale the scale factor the frames are rendered at
+     * @param layersPerPixel the number of layers drawn per vertical voxel
+     * @return a hexadecimal key, or null if the sheet image could not be read
+     */
+    public static String computeKey(String sheetName, int layerCount, int angleCount,
+                                    double cacheScale, int layersPerPixel) {
+        byte[] sheetBytes = readSheet(sheetName + ".png");
+        if (sheetBytes == null) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        digest.update(sheetBytes);
+        ByteBuffer settings = ByteBuffer.allocate(24);
+        settings.putInt(VERSION).putInt(layerCount).putInt(angleCount);
+        settings.putDouble(cacheScale).putInt(layersPerPixel);
+        digest.update(settings.array());
+
+        StringBuilder key = new StringBuilder();
+        byte[] hash = digest.digest();
+        // Half of the hash is more than enough to tell sheets apart
+        for (int i = 0; i < 16; i++) {
+            key.append(String.format("%02x", hash[i]));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Read the raw bytes of a sheet image, either from the images directory
+     * or from the classpath.
+     *
+     * @param fileName the file name of the sheet image
+     * @return the bytes of the file, or null if it could not be read
+     */
+    private static byte[] readSheet(String fileName) {
+        File file = new File("images", fileName);
+        try {
+            if (file.isFile()) {
+                return Files.readAllBytes(file.toPath());
+            }
+            InputStream stream = SprackAtlas.class.getClassLoader().getResourceAsStream("images/" + fileName);
+            if (stream == null) {
+                return null;
+            }
+            try (InputStream in = stream) {
+                return in.readAllBytes();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the atlas file for a sheet with the given key.
+     *
+     * @param sheetName the name of the sheet
+     * @param key the key computed by {@link #computeKey}
+     * @return the atlas file, which may not exist
+     */
+    public static File getFile(String sheetName, String key) {
+        return new File(CACHE_DIRECTORY, sheetName + "-" + key + ".atlas");
+    }
+
+    /**
+     * Open an existing atlas file.
+     *
+     * @param file the atlas file
+     * @param frameCount the number of frames the file is expected to hold
+     * @return the opened atlas, or null if the file does not exist or is not
+     *         a valid atlas with the expected number of frames
+     */
+    public static SprackAtlas open(File file, int frameCount) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_BYTES + frameCount * FRAME_HEADER_BYTES
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != frameCount) {
+                return null;
+            }
+            int[] widths = new int[frameCount];
+            int[] heights = new int[frameCount];
+            int[] centerXs = new int[frameCount];
+            int[] centerYs = new int[frameCount];
+            long[] offsets = new long[frameCount];
+            for (int i = 0; i < frameCount; i++) {
+                int pos = HEADER_BYTES + i * FRAME_HEADER_BYTES;
+                widths[i] = buffer.getInt(pos);
+                heights[i] = buffer.getInt(pos + 4);
+                centerXs[i] = buffer.getInt(pos + 8);
+                centerYs[i] = buffer.getInt(pos + 12);
+                offsets[i] = buffer.getLong(pos + 16);
+            }
+            // Make sure the last frame actually ends at the end of the file
+            int last = frameCount - 1;
+            if (offsets[last] + 4L * widths[last] * heights[last] != buffer.capacity()) {
+                return null;
+            }
+            return new SprackAtlas(widths, heights, centerXs, centerYs, offsets, buffer, null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Create a new atlas file with the given frame layout, ready to have its
+     * frames filled in with {@link #putFrame}.
+     * <p>
+     * The atlas is written to a temporary file, which only replaces the real
+     * file once {@link #finish} is called.
+     *
+     * @param file the atlas file to create
+     * @param widths the width of each frame
+     * @param heights the height of each frame
+     * @param centerXs the x offset of each frame's center
+     * @param centerYs the y offset of each frame's center
+     * @return the new atlas, or null if the file could not be created
+     */
+    public static SprackAtlas create(File file, int[] widths, int[] heights, int[] centerXs, int[] centerYs) {
+        final int frameCount = widths.length;
+        long size = HEADER_BYTES + (long) frameCount * FRAME_HEADER_BYTES;
+        long[] offsets = new long[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            offsets[i] = size;
+            size += 4L * widths[i] * heights[i];
+        }
+        // A single mapping cannot be larger than this
+        if (size > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        file.getParentFile().mkdirs();
+        File temp = getTempFile(file);
+        try {
+            RandomAccessFile output = new RandomAccessFile(temp, "rw");
+            output.setLength(size);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + frameCount * FRAME_HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(frameCount);
+            for (int i = 0; i < frameCount; i++) {
+                header.putInt(widths[i]).putInt(heights[i]);
+                header.putInt(centerXs[i]).putInt(centerYs[i]);
+                header.putLong(offsets[i]);
+            }
+            header.flip();
+            output.getChannel().write(header, 0);
+            return new SprackAtlas(widths, heights, centerXs, centerYs, offsets, null, output);
+        } catch (IOException e) {
+            System.out.println(e);
+            temp.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Get the temporary file an atlas file is written to before it is
+     * complete.
+     *
+     * @param file the atlas file
+     * @return the temporary file
+     */
+    private static File getTempFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    /**
+     * Write all data of a newly created atlas to disk, and replace the real
+     * atlas file and any outdated atlas files of the same sheet with it.
+     *
+     * @param file the atlas file this atlas was created for
+     * @param sheetName the name of the sheet
+     * @return the completed atlas opened from the real file, or null if it
+     *         could not be completed
+     */
+    public SprackAtlas finish(File file, String sheetName) {
+        try {
+            output.close();
+            Files.move(getTempFile(file).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println(e);
+            return null;
+        }
+        File[] oldFiles = file.getParentFile().listFiles(
+            (dir, name) -> name.startsWith(sheetName + "-") && !name.equals(file.getName()));
+        if (oldFiles != null) {
+            for (File oldFile : oldFiles) {
+                oldFile.delete();
+            }
+        }
+        return open(file, widths.length);
+    }
+
+    /**
+     * Give up on writing a newly created atlas, and delete its temporary file.
+     *
+     * @param file the atlas file this atlas was created for
+     */
+    public void abandon(File file) {
+        try {
+            output.close();
+        } catch (IOException e) {}
+        getTempFile(file).delete();
+    }
+
+    /**
+     * Store the pixels of a rendered frame in a newly created atlas. Frames
+     * may be stored from multiple threads at once.
+     *
+     * @param index the index of the frame
+     * @param image the rendered frame, which must have the size given when
+     *              this atlas was created
+     * @return whether the frame was written
+     */
+    public boolean putFrame(int index, GreenfootImage image) {
+        int width = widths[index];
+        int height = heights[index];
+        int[] pixels = image.getAwtImage().getRGB(0, 0, width, height, null, 0, width);
+        ByteBuffer bytes = ByteBuffer.allocate(4 * pixels.length);
+        bytes.asIntBuffer().put(pixels);
+        try {
+            FileChannel channel = output.getChannel();
+            long position = offsets[index];
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes, position);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copy a frame out of a complete atlas into a new image.
+     *
+     * @param index the index of the frame
+     * @return a new image containing the frame
+     */
+    public GreenfootImage getFrame(int index) {
+        int width = widths[index];
+        int height = heights[index];
+        int[] pixels = new int[width * height];
+        // Work on a duplicate so that frames may be read from multiple threads
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offsets[index]);
+        view.limit((int) offsets[index] + 4 * pixels.length);
+        view.slice().asIntBuffer().get(pixels);
+        GreenfootImage image = new GreenfootImage(width, height);
+        image.getAwtImage().setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    /**
+     * Get the number of frames in this atlas.
+     *
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return widths.length;
+    }
+
+    /**
+     * Get the width of a frame.
+     *
+     * @param index the index of the frame
+     * @return the width of the frame, in pixels
+     */
+    public int getWidth(int index) {
+        return widths[index];
+    }
+
+    /**
+     * Get the height of a frame.
+     *
+     * @param index the index of the frame
+     * @return the height of the frame, in pixels
+     */
+    public int getHeight(int index) {
+        return heights[index];
+    }
+
+    /**
+     * Get the x offset of a frame's center.
+     *
+     * @param index the index of the frame
+     * @return the x offset of the center, in pixels
+     */
+    public int getCenterX(int index) {
+        return centerXs[index];
+    }
+
+    /**
+     * Get the y offset of a frame's center.
+     *
+     * @param index the index of the frame
+     * @return the y offset of the center, in pixels
+     */
+    public int getCenterY(int index) {
+        return centerYs[index];
+    }
+}
@@ -1,18 +1,36 @@
 import greenfoot.*;
+import java.io.File;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A container of cached sprite stack images pre-rendered from many angles for
  * efficient use with the Sprack class. SprackView objects are immutable, and
  * only one object per sprite stack sheet should be created, since a new cache
  * of images will be created for each instance.
+ * <p>
+ * By default, the image for each rotation angle is only rendered the first
+ * time it is needed, and the least recently used images are discarded once
+ * the total size of all cached images exceeds the cache byte budget. Sheets
+ * are also rendered ahead of time in the background, starting with the
+ * player's sheets and any sheet that has just been drawn. Set
+ * {@code LAZY_CACHE} to false to render every angle of every sheet up front
+ * instead.
+ * <p>
+ * Rendered images are also saved to disk as a {@link SprackAtlas} per sheet.
+ * On later launches, images are read from the atlas instead of rendered, and
+ * only sheets that have changed since the atlas was saved are rendered again.
  *
  * @author Martin Baldwin
  * @version June 2024
@@ -46,6 +64,36 @@ public class SprackView {
      */
     public static final int LAYERS_PER_PIXEL = 6;
 
+    /**
+     * Whether to render rotation angles on demand and discard them when the
+     * cache byte budget is exceeded, instead of rendering all of them up front
+     * during loading.
+     */
+    private static final boolean LAZY_CACHE = true;
+
+    /**
+     * The number of scale factors per unit of scale that transformed images
+     * are created for. Requested scale factors are rounded to the nearest one,
+     * so that images can be reused while the camera zoom barely changes.
+     */
+    private static final int SCALE_BUCKETS = 64;
+
+    /** Whether to save rendered images to disk and read them back on later launches. */
+    private static final boolean DISK_CACHE = true;
+
+    /** The default maximum total size of lazily rendered images, in bytes. */
+    public static final long DEFAULT_CACHE_BYTE_BUDGET = 384L * 1024 * 1024;
+
+    // The current maximum total size of lazily rendered images, in bytes
+    private static long cacheByteBudget = DEFAULT_CACHE_BYTE_BUDGET;
+    // The total size of all lazily rendered images and their scaled copies, in bytes
+    private static long cachedBytes = 0;
+    // All lazily rendered images mapped to their SprackView, least recently used first
+    private static final LinkedHashMap<CacheEntry, SprackView> recentEntries = new LinkedHashMap<>(16, 0.75f, true);
+    // SprackViews waiting to have their images rendered in the background, most urgent first
+    private static final LinkedBlockingDeque<SprackView> warmQueue = new LinkedBlockingDeque<>();
+    private static Thread warmer;
+
     /** All Sprack sheets to be cached mapped to the number of layers in them. */
     private static final Map<String, Integer> sheetInfo = new HashMap<>();
     static {
@@ -105,18 +153,50 @@ public class SprackView {
 
     /**
      * Load and cache all SprackView objects to be used in the game.
+     * <p>
+     * Sheets with an up to date atlas on disk are read from it. Other sheets
+     * have all of their images rendered and saved to a new atlas, which is
+     * the only work counted by {@link #getLoadProgress()}. When caching
+     * lazily, images are then read or rendered in the background, the
+     * player's sheets first.
      */
     public static void loadAll() {
         viewMap.clear();
         loadedCaches.set(0);
+
+        // Find which sheets need their images rendered
+        Map<String, SprackAtlas> atlases = new HashMap<>();
+        Map<String, File> atlasFiles = new HashMap<>();
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : sheetInfo.entrySet()) {
+            final String name = entry.getKey();
+            String key = !DISK_CACHE ? null : SprackAtlas.computeKey(name, entry.getValue(),
+                IMAGE_CACHE_ANGLE_COUNT, IMAGE_CACHE_SCALE, LAYERS_PER_PIXEL);
+            if (key != null) {
+                File file = SprackAtlas.getFile(name, key);
+                SprackAtlas atlas = SprackAtlas.open(file, IMAGE_CACHE_ANGLE_COUNT);
+                if (atlas != null) {
+                    atlases.put(name, atlas);
+                } else {
+                    atlasFiles.put(name, file);
+                }
+            }
+            total += getLoadWork(atlases.get(name), atlasFiles.get(name));
+        }
+        totalCaches.set(total);
+
         ExecutorService service = Executors.newFixedThreadPool(sheetInfo.size());
         for (Map.Entry<String, Integer> entry : sheetInfo.entrySet()) {
             final String name = entry.getKey();
             final GreenfootImage sheet = new GreenfootImage(name + ".png");
             final int layerCount = entry.getValue();
+            final SprackAtlas atlas = atlases.get(name);
+            final File atlasFile = atlasFiles.get(name);
             service.execute(() -> {
-                viewMap.put(name, new SprackView(sheet, layerCount));
-                System.gc();
+                viewMap.put(name, new SprackView(name, sheet, layerCount, atlas, atlasFile));
+                if (!LAZY_CACHE) {
+                    System.gc();
+                }
             });
         }
         service.shutdown();
@@ -125,32 +205,154 @@ public class SprackView {
         } catch (InterruptedException e) {
             service.shutdownNow();
         }
+
+        if (LAZY_CACHE) {
+            for (Map.Entry<String, SprackView> entry : viewMap.entrySet()) {
+                if (entry.getKey().startsWith("knight_")) {
+                    prioritize(entry.getValue());
+                } else if (entry.getValue().warmQueued.compareAndSet(false, true)) {
+                    warmQueue.offerLast(entry.getValue());
+                }
+            }
+            startWarmer();
+        }
+    }
+
+    /**
+     * Get the amount of loading progress that creating a SprackView will
+     * make, which is one for each image it renders, or one if it renders none.
+     *
+     * @param atlas the up to date atlas of the sheet, or null
+     * @param atlasFile the atlas file to save rendered images to, or null
+     * @return the amount of loading progress
+     */
+    private static int getLoadWork(SprackAtlas atlas, File atlasFile) {
+        if (atlasFile != null || (atlas == null && !LAZY_CACHE)) {
+            return IMAGE_CACHE_ANGLE_COUNT;
+        }
+        return 1;
+    }
+
+    /**
+     * Start the background thread that renders the images of queued
+     * SprackViews, if it is not already running.
+     */
+    private static synchronized void startWarmer() {
+        if (warmer != null) {
+            return;
+        }
+        warmer = new Thread(() -> {
+            while (true) {
+                SprackView view;
+                try {
+                    view = warmQueue.takeFirst();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                view.warmQueued.set(false);
+                for (int i = 0; i < IMAGE_CACHE_ANGLE_COUNT; i++) {
+                    // Stop once the budget is full, the rest is rendered on demand
+                    if (view.loadCacheEntry(i, false) == null) {
+                        break;
+                    }
+                }
+            }
+        }, "SprackView Warmer");
+        warmer.setDaemon(true);
+        warmer.setPriority(Thread.MIN_PRIORITY);
+        warmer.start();
+    }
+
+    /**
+     * Move a SprackView to the front of the queue of SprackViews to render in
+     * the background.
+     *
+     * @param view the SprackView to render next
+     */
+    private static void prioritize(SprackView view) {
+        if (view.warmQueued.compareAndSet(false, true)) {
+            warmQueue.offerFirst(view);
+        } else if (warmQueue.remove(view)) {
+            warmQueue.offerFirst(view);
+        }
+    }
+
+    /**
+     * Set the maximum total size of lazily rendered images. Least recently used
+     * images are discarded immediately if the new budget is exceeded.
+     *
+     * @param bytes the new budget, in bytes
+     */
+    public static void setCacheByteBudget(long bytes) {
+        synchronized (recentEntries) {
+            cacheByteBudget = bytes;
+            evictOverBudget(null);
+        }
+    }
+
+    /**
+     * Get the total size of all lazily rendered images currently cached,
+     * including their scaled copies.
+     *
+     * @return the size of the cached images, in bytes
+     */
+    public static long getCachedBytes() {
+        synchronized (recentEntries) {
+            return cachedBytes;
+        }
     }
 
     /** The width of an untransformed layer, in pixels. */
     private final int layerWidth;
     /** The height of an untransformed layer, in pixels. */
     private final int layerHeight;
+    /** The radius of a circle containing every transformed image, at a scale of 1. */
+    private final double boundingRadius;
+
+    private static class ScaledImage {
+        private final int scaleBucket;
+        private final GreenfootImage image;
+        /** The approximate memory used by the image, in bytes. */
+        private final long bytes;
+
+        private ScaledImage(int scaleBucket, GreenfootImage image) {
+            this.scaleBucket = scaleBucket;
+            this.image = image;
+            bytes = image == null ? 0 : 4L * image.getWidth() * image.getHeight();
+        }
+    }
 
     private static class CacheEntry {
         private final GreenfootImage image;
         private final int centerX;
         private final int centerY;
+        /** The approximate memory used by the image, in bytes. */
+        private final long bytes;
+        /** The most recently requested scaled copy of the image, or null. */
+        private volatile ScaledImage scaled;
 
         private CacheEntry(GreenfootImage image, int centerX, int centerY) {
             this.image = image;
             this.centerX = centerX;
             this.centerY = centerY;
+            bytes = 4L * image.getWidth() * image.getHeight();
         }
     }
 
     /**
      * Images of the sprite stack at different rotation angles. rotCache[i]
      * contains the image representing the sprite stack at an angle of
-     * i / IMAGE_CACHE_ANGLE_COUNT * 360, scaled by a factor of IMAGE_CACHE_SCALE.
+     * i / IMAGE_CACHE_ANGLE_COUNT * 360, scaled by a factor of IMAGE_CACHE_SCALE,
+     * or null if it has not been rendered yet or has been discarded.
      */
-    private final CacheEntry[] rotCache;
+    private final AtomicReferenceArray<CacheEntry> rotCache;
     private final int layerCount;
+    /** The individual layer images, kept to render angles on demand. */
+    private final GreenfootImage[] layers;
+    /** Whether this SprackView is waiting in the background rendering queue. */
+    private final AtomicBoolean warmQueued = new AtomicBoolean(false);
+    /** The atlas on disk to read images from, or null to render them. */
+    private final SprackAtlas atlas;
 
     /**
      * Create a new cache for a sprite stack created by layering the specified
@@ -162,26 +364,95 @@ public class SprackView {
      *                   sheet
      */
     public SprackView(GreenfootImage layerSheet, int layerCount) {
+        this(null, layerSheet, layerCount, null, null);
+    }
+
+    /**
+     * Create a new cache for a sprite stack, reading its images from an atlas
+     * on disk or saving them to a new one.
+     *
+     * @param sheetName the name of the sheet, used to name a new atlas
+     * @param layerSheet a GreenfootImage containing individual layers arranged
+     *                   vertically from bottom to top
+     * @param layerCount the number of layers to extract from the given layer
+     *                   sheet
+     * @param atlas an up to date atlas to read images from, or null
+     * @param atlasFile the atlas file to render all images and save them to,
+     *                  or null
+     */
+    private SprackView(String sheetName, GreenfootImage layerSheet, int layerCount,
+                       SprackAtlas atlas, File atlasFile) {
         this.layerCount = layerCount;
 
         // Create individual layer images from sheet
         layerWidth = layerSheet.getWidth();
         layerHeight = layerSheet.getHeight() / layerCount;
-        GreenfootImage[] layers = new GreenfootImage[layerCount];
+        // Any rotated layer fits within its diagonal, and the stack rises
+        // layerCount pixels above the bottom layer
+        boundingRadius = Math.hypot(layerWidth, layerHeight) / 2 + layerCount / 2.0;
+        layers = new GreenfootImage[layerCount];
         for (int i = 0; i < layers.length; i++) {
             layers[i] = new GreenfootImage(layerWidth, layerHeight);
             layers[i].drawImage(layerSheet, 0, -layerHeight * (layerCount - 1 - i));
         }
 
         // Create rotated image cache
-        rotCache = new CacheEntry[IMAGE_CACHE_ANGLE_COUNT];
+        rotCache = new AtomicReferenceArray<>(IMAGE_CACHE_ANGLE_COUNT);
+        if (atlasFile != null) {
+            atlas = renderAll(sheetName, atlasFile);
+        } else if (atlas == null && !LAZY_CACHE) {
+            renderAll(null, null);
+        } else {
+            if (atlas != null && !LAZY_CACHE) {
+                for (int i = 0; i < IMAGE_CACHE_ANGLE_COUNT; i++) {
+                    rotCache.set(i, readCacheEntry(atlas, i));
+                }
+            }
+            loadedCaches.getAndIncrement();
+        }
+        this.atlas = atlas;
+    }
+
+    /**
+     * Render the images at every rotation angle, keeping them in the cache if
+     * not caching lazily, and saving them to a new atlas file if given.
+     *
+     * @param sheetName the name of the sheet, used to name a new atlas
+     * @param atlasFile the atlas file to save the images to, or null
+     * @return the saved atlas, or null if none was saved
+     */
+    private SprackAtlas renderAll(String sheetName, File atlasFile) {
+        SprackAtlas output = null;
+        if (atlasFile != null) {
+            int[] widths = new int[IMAGE_CACHE_ANGLE_COUNT];
+            int[] heights = new int[IMAGE_CACHE_ANGLE_COUNT];
+            int[] centerXs = new int[IMAGE_CACHE_ANGLE_COUNT];
+            int[] centerYs = new int[IMAGE_CACHE_ANGLE_COUNT];
+            for (int i = 0; i < IMAGE_CACHE_ANGLE_COUNT; i++) {
+                int[] layout = getCacheLayout(360.0 / IMAGE_CACHE_ANGLE_COUNT * i, layerCount, layerWidth, layerHeight);
+                widths[i] = layout[0];
+                heights[i] = layout[1];
+                centerXs[i] = layout[2];
+                centerYs[i] = layout[3];
+            }
+            output = SprackAtlas.create(atlasFile, widths, heights, centerXs, centerYs);
+        }
+
+        final SprackAtlas atlasOutput = output;
+        final AtomicBoolean saved = new AtomicBoolean(output != null);
         final int processors = Runtime.getRuntime().availableProcessors();
         ExecutorService service = Executors.newFixedThreadPool(processors);
         for (int i = 0; i < IMAGE_CACHE_ANGLE_COUNT; i++) {
             final int index = i;
             final double rot = 360.0 / IMAGE_CACHE_ANGLE_COUNT * index;
             service.execute(() -> {
-                rotCache[index] = createCacheEntry(rot, layers, layerWidth, layerHeight);
+                CacheEntry entry = createCacheEntry(rot, layers, layerWidth, layerHeight);
+                if (atlasOutput != null && !atlasOutput.putFrame(index, entry.image)) {
+                    saved.set(false);
+                }
+                if (!LAZY_CACHE) {
+                    rotCache.set(index, entry);
+                }
                 loadedCaches.getAndIncrement();
             });
         }
@@ -190,21 +461,41 @@ public class SprackView {
             service.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             service.shutdownNow();
+            saved.set(false);
+        }
+
+        if (output == null) {
+            return null;
         }
+        if (!saved.get()) {
+            output.abandon(atlasFile);
+            return null;
+        }
+        return output.finish(atlasFile, sheetName);
     }
 
     /**
-     * Create a new cache entry for a sprite stack given the rotation angle and
-     * individual layer images.
+     * Read the cache entry at the given index from an atlas.
+     *
+     * @param atlas the atlas to read from
+     * @param index the index of the rotation angle
+     * @return a new cache entry containing the image read from the atlas
+     */
+    private static CacheEntry readCacheEntry(SprackAtlas atlas, int index) {
+        return new CacheEntry(atlas.getFrame(index), atlas.getCenterX(index), atlas.getCenterY(index));
+    }
+
+    /**
+     * Compute the size and center of the image that
+     * {@link #createCacheEntry} creates, without drawing it.
      *
      * @param imageDegrees the rotation angle of the sprite stack, in degrees
-     * @param layers the individual layer images of the sprite stack
+     * @param layerCount the number of layers in the sprite stack
      * @param layerWidth the width of an untransformed layer
      * @param layerHeight the height of an untransformed layer
-     * @return a new CacheEntry object containing the pre-rendered sprite stack
-     *         image
+     * @return an array of the image's width, height, center x and center y
      */
-    public static CacheEntry createCacheEntry(double imageDegrees, GreenfootImage[] layers, int layerWidth, int layerHeight) {
+    private static int[] getCacheLayout(double imageDegrees, int layerCount, int layerWidth, int layerHeight) {
         double imageRad = Math.toRadians(imageDegrees);
         // Get scaled dimensions of layers
         int width = (int) (layerWidth * IMAGE_CACHE_SCALE);
@@ -218,8 +509,31 @@ public class SprackView {
         if (rotHeight < height) {
             rotHeight = height;
         }
+        int imageHeight = rotHeight + (int) (layerCount * IMAGE_CACHE_SCALE);
+        return new int[] {rotWidth, imageHeight, rotWidth / 2, imageHeight - rotHeight / 2};
+    }
+
+    /**
+     * Create a new cache entry for a sprite stack given the rotation angle and
+     * individual layer images.
+     *
+     * @param imageDegrees the rotation angle of the sprite stack, in degrees
+     * @param layers the individual layer images of the sprite stack
+     * @param layerWidth the width of an untransformed layer
+     * @param layerHeight the height of an untransformed layer
+     * @return a new CacheEntry object containing the pre-rendered sprite stack
+     *         image
+     */
+    public static CacheEntry createCacheEntry(double imageDegrees, GreenfootImage[] layers, int layerWidth, int layerHeight) {
+        // Get scaled dimensions of layers
+        int width = (int) (layerWidth * IMAGE_CACHE_SCALE);
+        int height = (int) (layerHeight * IMAGE_CACHE_SCALE);
+        // Get rotated and scaled dimensions of layer images
+        int[] layout = getCacheLayout(imageDegrees, layers.length, layerWidth, layerHeight);
+        int rotWidth = layout[0];
+        int rotHeight = layout[1] - (int) (layers.length * IMAGE_CACHE_SCALE);
         // Draw layers onto an image
-        GreenfootImage image = new GreenfootImage(rotWidth, rotHeight + (int) (layers.length * IMAGE_CACHE_SCALE));
+        GreenfootImage image = new GreenfootImage(layout[0], layout[1]);
         for (int i = 0; i < layers.length; i++) {
             GreenfootImage layer = new GreenfootImage(layers[i]);
             layer.scale(width, height);
@@ -231,7 +545,98 @@ public class SprackView {
             }
             // image.drawImage(rotLayer, 0, (int) (IMAGE_CACHE_SCALE * (layers.length - 1 - i)));
         }
-        return new CacheEntry(image, rotWidth / 2, image.getHeight() - rotHeight / 2);
+        return new CacheEntry(image, layout[2], layout[3]);
+    }
+
+    /**
+     * Get the cache entry for the given rotation angle, rendering it now if it
+     * is not cached.
+     *
+     * @param rotation the rotation angle of the sprite stack, in degrees
+     * @return the cache entry for the angle
+     */
+    private CacheEntry getCacheEntry(double rotation) {
+        int index = getCacheIndex(rotation);
+        CacheEntry entry = rotCache.get(index);
+        if (entry == null) {
+            entry = loadCacheEntry(index, true);
+            // This sheet is being drawn, so render its other angles soon
+            prioritize(this);
+        }
+        return entry;
+    }
+
+    /**
+     * Render the cache entry at the given index if it is not cached, and add
+     * it to the cache byte budget.
+     *
+     * @param index the index into the cache to render
+     * @param evict whether to discard least recently used images to make room,
+     *              instead of giving up if the budget is full
+     * @return the cache entry at the index, or null if it did not fit within
+     *         the budget
+     */
+    private CacheEntry loadCacheEntry(int index, boolean evict) {
+        synchronized (this) {
+            CacheEntry entry = rotCache.get(index);
+            if (entry != null) {
+                return entry;
+            }
+            double rot = 360.0 / IMAGE_CACHE_ANGLE_COUNT * index;
+            if (!evict) {
+                // Give up before rendering or reading an image that won't fit
+                int[] layout = getCacheLayout(rot, layerCount, layerWidth, layerHeight);
+                synchronized (recentEntries) {
+                    if (cachedBytes + 4L * layout[0] * layout[1] > cacheByteBudget) {
+                        return null;
+                    }
+                }
+            }
+            if (atlas != null) {
+                entry = readCacheEntry(atlas, index);
+            } else {
+                entry = createCacheEntry(rot, layers, layerWidth, layerHeight);
+            }
+            synchronized (recentEntries) {
+                if (!evict && cachedBytes + entry.bytes > cacheByteBudget) {
+                    return null;
+                }
+                recentEntries.put(entry, this);
+                cachedBytes += entry.bytes;
+                rotCache.set(index, entry);
+                evictOverBudget(entry);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Discard least recently used images until the cache byte budget is met.
+     * Must be called while holding the lock on {@code recentEntries}.
+     *
+     * @param keep an entry that must not be discarded, or null
+     */
+    private static void evictOverBudget(CacheEntry keep) {
+        Iterator<Map.Entry<CacheEntry, SprackView>> iter = recentEntries.entrySet().iterator();
+        while (cachedBytes > cacheByteBudget && iter.hasNext()) {
+            Map.Entry<CacheEntry, SprackView> oldest = iter.next();
+            if (oldest.getKey() == keep) {
+                continue;
+            }
+            iter.remove();
+            cachedBytes -= oldest.getKey().bytes;
+            ScaledImage scaled = oldest.getKey().scaled;
+            if (scaled != null) {
+                cachedBytes -= scaled.bytes;
+                oldest.getKey().scaled = null;
+            }
+            AtomicReferenceArray<CacheEntry> cache = oldest.getValue().rotCache;
+            for (int i = 0; i < cache.length(); i++) {
+                if (cache.compareAndSet(i, oldest.getKey(), null)) {
+                    break;
+                }
+            }
+        }
     }
 
     /**
@@ -276,25 +681,82 @@ public class SprackView {
         return (int) (Vector2.normalizeAngle(rotation) / 360.0 * IMAGE_CACHE_ANGLE_COUNT);
     }
 
+    /**
+     * Return the scale bucket that the given scale factor is rounded to.
+     *
+     * @param scale the scale factor of the sprite stack
+     * @return the nearest scale bucket
+     */
+    private static int getScaleBucket(double scale) {
+        return (int) Math.round(scale * SCALE_BUCKETS);
+    }
+
+    /**
+     * Round a scale factor to the nearest scale bucket, which is the scale
+     * factor that transformed images are actually created with.
+     *
+     * @param scale the scale factor of the sprite stack
+     * @return the rounded scale factor
+     */
+    private static double quantizeScale(double scale) {
+        return getScaleBucket(scale) / (double) SCALE_BUCKETS;
+    }
+
     /**
      * Return a GreenfootImage representing the sprite stack of this SprackView
      * rotated and scaled by the specified amounts, or null if the image would
      * be empty.
+     * <p>
+     * The scale factor is rounded to the nearest scale bucket, and the image
+     * for each rotation angle and scale bucket is reused until a different
+     * scale is requested for that angle. The returned image is shared, so it
+     * must not be modified; copy it first, or apply transparency when drawing
+     * it instead.
      *
      * @param rotation the rotation angle of the sprite stack, in degrees
      * @param scale the scale factor of the sprite stack
-     * @return a new GreenfootImage representing the sprite stack, or null if the image would be empty
+     * @return a shared GreenfootImage representing the sprite stack, or null if the image would be empty
      * @throws UnsupportedOperationException if the given scale factor is larger than the scale factor of the image cache
      */
     public GreenfootImage getTransformedImage(double rotation, double scale) {
-        GreenfootImage cachedImage = rotCache[getCacheIndex(rotation)].image;
+        CacheEntry entry = getCacheEntry(rotation);
+        if (LAZY_CACHE) {
+            // Mark the entry as recently used
+            synchronized (recentEntries) {
+                recentEntries.get(entry);
+            }
+        }
+        int scaleBucket = getScaleBucket(scale);
+        ScaledImage scaled = entry.scaled;
+        if (scaled != null && scaled.scaleBucket == scaleBucket) {
+            return scaled.image;
+        }
+
+        GreenfootImage cachedImage = entry.image;
+        scale = quantizeScale(scale);
         int scaledWidth = (int) (cachedImage.getWidth() / IMAGE_CACHE_SCALE * scale);
         int scaledHeight = (int) (cachedImage.getHeight() / IMAGE_CACHE_SCALE * scale);
-        if (scaledWidth <= 0 || scaledHeight <= 0) {
-            return null;
+        GreenfootImage image = null;
+        if (scaledWidth > 0 && scaledHeight > 0) {
+            image = new GreenfootImage(cachedImage);
+            image.scale(scaledWidth, scaledHeight);
+        }
+        scaled = new ScaledImage(scaleBucket, image);
+        if (LAZY_CACHE) {
+            // The scaled copy counts towards the budget while its entry is cached
+            synchronized (recentEntries) {
+                if (recentEntries.containsKey(entry)) {
+                    if (entry.scaled != null) {
+                        cachedBytes -= entry.scaled.bytes;
+                    }
+                    cachedBytes += scaled.bytes;
+                    entry.scaled = scaled;
+                    evictOverBudget(entry);
+                }
+            }
+        } else {
+            entry.scaled = scaled;
         }
-        GreenfootImage image = new GreenfootImage(cachedImage);
-        image.scale(scaledWidth, scaledHeight);
         return image;
     }
 
@@ -312,7 +774,7 @@ public class SprackView {
      *         were passed to {@link #getTransformedImage}
      */
     public int getTransformedImageWidth(double rotation, double scale) {
-        return (int) (rotCache[getCacheIndex(rotation)].image.getWidth() / IMAGE_CACHE_SCALE * scale);
+        return (int) (getCacheEntry(rotation).image.getWidth() / IMAGE_CACHE_SCALE * quantizeScale(scale));
     }
 
     /**
@@ -329,7 +791,7 @@ public class SprackView {
      *         were passed to {@link #getTransformedImage}
      */
     public int getTransformedImageHeight(double rotation, double scale) {
-        return (int) (rotCache[getCacheIndex(rotation)].image.getHeight() / IMAGE_CACHE_SCALE * scale);
+        return (int) (getCacheEntry(rotation).image.getHeight() / IMAGE_CACHE_SCALE * quantizeScale(scale));
     }
 
     /**
@@ -379,7 +841,7 @@ public class SprackView {
      *         {@link #getTransformedImage}
      */
     public int getCenterX(double rotation, double scale) {
-        return (int) (rotCache[getCacheIndex(rotation)].centerX / IMAGE_CACHE_SCALE * scale);
+        return (int) (getCacheEntry(rotation).centerX / IMAGE_CACHE_SCALE * quantizeScale(scale));
     }
 
     /**
@@ -396,7 +858,21 @@ public class SprackView {
      *         {@link #getTransformedImage}
      */
     public int getCenterY(double rotation, double scale) {
-        return (int) (rotCache[getCacheIndex(rotation)].centerY / IMAGE_CACHE_SCALE * scale);
+        return (int) (getCacheEntry(rotation).centerY / IMAGE_CACHE_SCALE * quantizeScale(scale));
+    }
+
+    /**
+     * Return the radius of a circle containing the image of the sprite stack
+     * of this SprackView at any rotation, at a scale factor of 1.
+     * <p>
+     * The circle is centered half of the layer count above the screen center
+     * of the bottommost layer (see {@link #getCenterY}), and is meant for
+     * cheaply checking whether the sprite stack is on screen.
+     *
+     * @return the radius of the bounding circle, in pixels
+     */
+    public double getBoundingRadius() {
+        return boundingRadius;
     }
 
     /**
@@ -1,9 +1,7 @@
 import greenfoot.*;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.stream.Stream;
-import java.util.stream.Collectors;
 import java.util.Random;
 
 /**
@@ -32,13 +30,16 @@ public class SprackWorld extends PixelWorld {
     private WorldData worldData;
     private Player player;
     private List<Damage> damages;
-    private List<CollisionController> collisionControllers;
+    private CollisionSystem collisionSystem;
+    private SpatialGrid spatialGrid;
     private boolean bFlag = false;
     private Timer saveTimer = new Timer(1800);
 
     // world information
     public static final int WORLD_WIDTH = 256;
     public static final int WORLD_HEIGHT = 196;
+    // the maximum number of generated chunks to add to the world each act
+    private static final int CHUNKS_PER_ACT = 2;
 
     /**
      * Create a new SprackWorld.
@@ -48,9 +49,19 @@ public class SprackWorld extends PixelWorld {
      */
     public SprackWorld(boolean seeded, long seed) {
         super(WORLD_WIDTH, WORLD_HEIGHT);
+        // Ground sprites like dirt and ponds never move, so they are drawn
+        // from a cached image along with the grass color behind them
+        setLayerCache(Layer.GROUND, new LayerCache(WORLD_WIDTH, WORLD_HEIGHT, new Color(182, 189, 160)));
+        // Most spracks in the loaded chunks are offscreen, so only the
+        // visible ones are sorted by depth and rendered
+        setLayerCulled(Layer.SPRACK_DEFAULT, true);
+        setLayerSorted(Layer.SPRACK_DEFAULT, true);
+        setLayerCulled(Layer.SPRACK_CANOPY, true);
+        setLayerSorted(Layer.SPRACK_CANOPY, true);
 
         damages = new ArrayList<>();
-        collisionControllers = new ArrayList<>();
+        collisionSystem = new CollisionSystem();
+        spatialGrid = new SpatialGrid();
 
         Cluster.clearClusters();
 
@@ -70,12 +81,7 @@ public class SprackWorld extends PixelWorld {
         Camera.setCloseness(0.3);
 
         worldData.generateWorld();
-        for (Vector2 coord : worldData.getSurroundings().keySet()) {
-            if (worldData.getSurroundings().get(coord) != null) {
-                final int x = (int) coord.x * 20, z = (int) coord.y * 20;
-                addWorldObject(worldData.getSurroundings().get(coord), x, 0, z);
-            }
-        }
+        updateElements(Integer.MAX_VALUE);
         for(Item i : worldData.getHotbar()) {
             addWorldObject(i, player.getWorldPos());
             i.setPlayer(player);
@@ -88,7 +94,6 @@ public class SprackWorld extends PixelWorld {
         applyAdditions();
         render();
         updateImage();
-        updateElements();
     }
 
     @Override
@@ -100,18 +105,22 @@ public class SprackWorld extends PixelWorld {
     @Override
     public void update() {
         Music.set("main_music.wav");
-        List<? extends Sprite> spracks = getSpritesByLayer(Layer.SPRACK_DEFAULT);
-        spracks.sort(Comparator.comparing(Sprite::getSortValue));
-        spracks = getSpritesByLayer(Layer.SPRACK_CANOPY);
-        spracks.sort(Comparator.comparing(Sprite::getSortValue));
 
+        Profiler.begin("damages");
         updateDamages();
+        Profiler.end("damages");
 
+        Profiler.begin("sprites");
         updateSprites();
+        Profiler.end("sprites");
 
+        Profiler.begin("collision");
         updateCollision();
+        Profiler.end("collision");
 
+        Profiler.begin("chunks");
         updateSurroundings();
+        Profiler.end("chunks");
 
         if (Greenfoot.isKeyDown("m")) {
             Greenfoot.setWorld(new WorldMap(this, worldData));
@@ -148,73 +157,69 @@ public class SprackWorld extends PixelWorld {
     private void updateSurroundings() {
         int cameraGridX = (int) (Camera.getX() / 20);
         int cameraGridZ = (int) (Camera.getZ() / 20);
-        if (worldData.updatePlayerLocation(cameraGridX, cameraGridZ)) {
-            updateElements();
-        }
+        worldData.updatePlayerLocation(cameraGridX, cameraGridZ);
+        updateElements(CHUNKS_PER_ACT);
     }
 
-    private void updateElements() {
-        List<? extends Sprite> features = getSprites(Feature.class);
-        Vector2 playerPos = worldData.getPlayerLocation();
-        int genRad = worldData.getGenerationRadius();
-        // remove objects not present in world data
-        for (Sprite sprite : features) {
-            Feature feature = (Feature) sprite;
-            if (!worldData.getSurroundings().containsValue(feature)) {
+    /**
+     * Add and remove the elements of chunks that have been loaded or unloaded
+     * since the last call.
+     *
+     * @param chunkBudget the maximum number of loaded chunks to add
+     */
+    private void updateElements(int chunkBudget) {
+        boolean changed = false;
+        // remove features of unloaded chunks
+        Chunk chunk;
+        while ((chunk = worldData.pollUnloadedChunk()) != null) {
+            for (Feature feature : chunk.getFeatures().values()) {
                 removeSprite(feature);
             }
+            changed = true;
         }
-        // add objects not already in world
-        for (Vector2 coord : worldData.getSurroundings().keySet()) {
-            if (worldData.getSurroundings().get(coord) != null
-            && !features.contains(worldData.getSurroundings().get(coord))) {
-                final int x = (int) coord.x * 20, z = (int) coord.y * 20;
-                addWorldObject(worldData.getSurroundings().get(coord), x, 0, z);
-            }
+        // add features of newly loaded chunks, only as many as the budget allows
+        for (int i = 0; i < chunkBudget && (chunk = worldData.pollLoadedChunk()) != null; i++) {
+            chunk.getFeatures().forEach((key, feature) -> {
+                addWorldObject(feature, TileKey.x(key) * 20, 0, TileKey.y(key) * 20);
+            });
+            changed = true;
         }
-        // remove offscreen items and add onscreen items
-        List<? extends Sprite> items = getSprites(Item.class);
-        for (long id : worldData.getStoredItems().keySet()) {
-            Item i = worldData.getStoredItems().get(id).item;
-            Vector2 pos = worldData.getStoredItems().get(id).pos;
-            // remove if offscreen
-            if (pos.distanceTo(playerPos) > genRad && items.contains(i)) {
-                removeSprite(i);
-            }
-            // add if onscreen
-            if (pos.distanceTo(playerPos) <= genRad && !items.contains(i)) {
-                addWorldObject(i, Vector3.fromXZ(pos).multiply(20));
+        if (!changed) return;
+
+        // remove items in unloaded chunks and add items in loaded chunks
+        PositionStore<Item> items = worldData.getStoredItems();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            boolean inWorld = item.getWorld() != null && !item.isRemoved();
+            boolean loaded = worldData.isLoaded(items.getX(i), items.getY(i));
+            if (inWorld && !loaded) {
+                removeSprite(item);
+            } else if (!inWorld && loaded) {
+                addWorldObject(item, items.getX(i) * 20, 0, items.getY(i) * 20);
             }
         }
 
-        // refresh all entities
-        List<? extends Sprite> entities = getSprites(Entity.class);
-        // add all entities without repeating
-        for (long id : worldData.getStoredEntities().keySet()) {
-            Entity e = worldData.getStoredEntities().get(id).entity;
-            Vector2 pos = worldData.getStoredEntities().get(id).pos;
-            if(!entities.contains(e)) {
-                addWorldObject(e, Vector3.fromXZ(pos).multiply(20));
-            }
-        }
-        // force addition
-        applyAdditions();
-        // store all entities
-        worldData.getStoredEntities().clear();
-        entities = getSprites(Entity.class);
-        for (Sprite s : entities) {
+        // store all entities, unloading those in unloaded chunks
+        for (Sprite s : getSprites(Entity.class)) {
             Entity e = (Entity) s;
+            if (e.isRemoved()) continue;
             Vector3 v = e.getWorldPos();
-            worldData.storeEntity(new Vector2(v.x / 20, v.z / 20), e);
-        }
-        // unload all entities offscreen
-        for (long id : worldData.getStoredEntities().keySet()) {
-            Entity e = worldData.getStoredEntities().get(id).entity;
-            Vector2 pos = worldData.getStoredEntities().get(id).pos;
-            if (pos.distanceTo(worldData.getPlayerLocation()) > genRad) {
+            Vector2 pos = new Vector2(v.x / 20, v.z / 20);
+            worldData.storeEntity(pos, e);
+            if (!worldData.isLoaded(pos)) {
                 removeSprite(e);
             }
         }
+        // add stored entities in loaded chunks
+        PositionStore<Entity> entities = worldData.getStoredEntities();
+        for (int i = 0; i < entities.size(); i++) {
+            Entity entity = entities.get(i);
+            if (entity.getWorld() == null && worldData.isLoaded(entities.getX(i), entities.getY(i))) {
+                addWorldObject(entity, entities.getX(i) * 20, 0, entities.getY(i) * 20);
+            }
+        }
+        // force changes
+        applyAdditions();
         applyRemovals();
     }
 
@@ -230,21 +235,12 @@ public class SprackWorld extends PixelWorld {
     }
 
     private void updateCollision() {
-        List<CollisionController> removals = new ArrayList<>();
-        for (CollisionController controller : collisionControllers) {
-            controller.update();
-            if (controller.isRemoved()) {
-                removals.add(controller);
-            }
-        }
-        collisionControllers.removeAll(removals);
+        collisionSystem.update();
     }
 
     @Override
     public void render() {
-        GreenfootImage background = getCanvas();
-        background.setColor(new Color(182, 189, 160));
-        background.fill();
+        // The ground layer cache fills the canvas with the background
         renderSprites();
     }
 
@@ -277,6 +273,63 @@ public class SprackWorld extends PixelWorld {
         addWorldObject(object, pos.x, pos.y, pos.z);
     }
 
+    @Override
+    protected void spriteAdded(Sprite sprite) {
+        if (sprite instanceof WorldObject) {
+            spatialGrid.insert((WorldObject) sprite);
+        }
+    }
+
+    @Override
+    protected void spriteRemoved(Sprite sprite) {
+        if (sprite instanceof WorldObject) {
+            spatialGrid.remove((WorldObject) sprite);
+        }
+    }
+
+    /**
+     * Update the position of a WorldObject within this world's spatial index.
+     * <p>
+     * This is called by WorldObjects whenever their world position is set, and
+     * only does work when the object has moved into a different grid cell.
+     *
+     * @param object the WorldObject whose position has changed
+     */
+    public void updateSpatialIndex(WorldObject object) {
+        spatialGrid.update(object);
+    }
+
+    /**
+     * Get all WorldObjects of a particular class within a certain range of a
+     * center point.
+     * <p>
+     * Only the cells of this world's {@link SpatialGrid} that overlap the
+     * range are visited, so this is much cheaper than filtering every sprite
+     * of the class.
+     *
+     * @param center the center point
+     * @param range the range
+     * @param cls the class of WorldObjects to look for
+     * @return a list of WorldObjects of the given class within the range
+     */
+    public <T extends WorldObject> List<T> getWorldObjectsInRange(Vector3 center, double range, Class<T> cls) {
+        return spatialGrid.getInRange(center, range, cls);
+    }
+
+    /**
+     * Get all WorldObjects of a particular class within a certain range of a
+     * center point, including those exactly at the range.
+     *
+     * @param center the center point
+     * @param range the range
+     * @param cls the class of WorldObjects to look for
+     * @return a list of WorldObjects of the given class within or at the range
+     * @see #getWorldObjectsInRange(Vector3, double, Class)
+     */
+    public <T extends WorldObject> List<T> getWorldObjectsWithinRange(Vector3 center, double range, Class<T> cls) {
+        return spatialGrid.getInRange(center, range, cls, true);
+    }
+
     /**
      * Get all Spracks within a certain range of a center point as a stream.
      * <p>
@@ -289,9 +342,7 @@ public class SprackWorld extends PixelWorld {
      * @return a stream of Spracks within the range
      */
     public Stream<Sprack> getSpracksInRangeAsStream(Vector3 center, double range) {
-        return getSpritesAsStream(Sprack.class)
-            .map(sprack -> (Sprack) sprack)
-            .filter(sprack -> sprack.getWorldPos().distanceTo(center) < range);
+        return getSpracksInRange(center, range).stream();
     }
 
     /**
@@ -302,7 +353,7 @@ public class SprackWorld extends PixelWorld {
      * @return a list of Spracks within the range
      */
     public List<Sprack> getSpracksInRange(Vector3 center, double range) {
-        return getSpracksInRangeAsStream(center, range).collect(Collectors.toList());
+        return getWorldObjectsInRange(center, range, Sprack.class);
     }
 
     /**
@@ -317,9 +368,7 @@ public class SprackWorld extends PixelWorld {
      * @return a stream of WorldSprites within the range
      */
     public Stream<WorldSprite> getWorldSpritesInRangeAsStream(Vector3 center, double range) {
-        return getSpritesAsStream(WorldSprite.class)
-            .map(sprite -> (WorldSprite) sprite)
-            .filter(sprite -> sprite.getWorldPos().distanceTo(center) < range);
+        return getWorldSpritesInRange(center, range).stream();
     }
 
     /**
@@ -330,7 +379,7 @@ public class SprackWorld extends PixelWorld {
      * @return a list of WorldSprites within the range
      */
     public List<WorldSprite> getWorldSpritesInRange(Vector3 center, double range) {
-        return getWorldSpritesInRangeAsStream(center, range).collect(Collectors.toList());
+        return getWorldObjectsInRange(center, range, WorldSprite.class);
     }
 
     /**
@@ -345,9 +394,7 @@ public class SprackWorld extends PixelWorld {
      * @return a stream of Entities within the range
      */
     public Stream<Entity> getEntitiesInRangeAsStream(Vector3 center, double range) {
-        return getSpritesAsStream(Entity.class)
-            .map(entity -> (Entity) entity)
-            .filter(entity -> entity.getWorldPos().distanceTo(center) < range);
+        return getEntitiesInRange(center, range).stream();
     }
 
     /**
@@ -358,7 +405,7 @@ public class SprackWorld extends PixelWorld {
      * @return a list of Entities within the range
      */
     public List<Entity> getEntitiesInRange(Vector3 center, double range) {
-        return getEntitiesInRangeAsStream(center, range).collect(Collectors.toList());
+        return getWorldObjectsInRange(center, range, Entity.class);
     }
 
     /**
@@ -398,14 +445,14 @@ public class SprackWorld extends PixelWorld {
     }
 
     public void addCollisionController(CollisionController controller) {
-        collisionControllers.add(controller);
+        collisionSystem.add(controller);
     }
 
     public void removeCollisionController(CollisionController controller) {
-        collisionControllers.remove(controller);
+        collisionSystem.remove(controller);
     }
 
     public List<CollisionController> getCollisionControllers() {
-        return collisionControllers;
+        return collisionSystem.getControllers();
     }
 }
@@ -16,6 +16,9 @@ public abstract class Sprite {
     private boolean updating = true;
     private boolean rendering = true;
     private boolean removed = false;
+    // Bookkeeping of PixelWorld for keeping the visible sprites of culled
+    // layers in order between frames
+    private int cullMark = 0;
 
     /**
      * Create a new Sprite on the given {@link Layer}.
@@ -120,6 +123,58 @@ public abstract class Sprite {
         return screenPos.y;
     }
 
+    /**
+     * Check if this sprite can be skipped when rendering to a canvas of the
+     * given size this frame, because nothing it draws would be on the canvas.
+     * <p>
+     * Sprites on a layer that is culled (see {@link PixelWorld#setLayerCulled})
+     * are checked once per frame before sorting and rendering. A sprite that
+     * returns true is not rendered, so it should do any other per-frame work
+     * of its {@link #render} method here instead.
+     * <p>
+     * By default, this method returns false.
+     *
+     * @param width the width of the canvas
+     * @param height the height of the canvas
+     * @return whether this sprite is culled this frame
+     */
+    public boolean cull(int width, int height) {
+        return false;
+    }
+
+    /**
+     * Get the mark left on this sprite by the last cull pass of a
+     * {@link PixelWorld} that looked at it.
+     *
+     * @return the cull mark
+     */
+    int getCullMark() {
+        return cullMark;
+    }
+
+    /**
+     * Set the mark left on this sprite by a cull pass of a {@link PixelWorld}.
+     *
+     * @param mark the cull mark
+     */
+    void setCullMark(int mark) {
+        cullMark = mark;
+    }
+
+    /**
+     * Check if this sprite is static, meaning that it is a world space sprite
+     * that always looks the same while the {@link Camera} does not turn or
+     * zoom. Static sprites on a layer with a {@link LayerCache} are drawn from
+     * the cached image instead of being rendered every frame.
+     * <p>
+     * By default, this method returns false.
+     *
+     * @return whether this sprite is static
+     */
+    public boolean isStatic() {
+        return false;
+    }
+
     /**
      * Render this sprite to the given canvas.
      * <p>
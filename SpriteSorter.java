@@ -0,0 +1,127 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorts the sprites of a {@link Layer} by their sort values every frame,
+ * taking advantage of the order barely changing from one frame to the next.
+ * <p>
+ * The sort value of each sprite is computed once per sort, into an array of
+ * keys that is reused between frames. The sprites are then put in order with
+ * an insertion sort, which takes close to linear time on a list that was
+ * sorted last frame. Moving or zooming the {@link Camera} keeps the order of
+ * screen positions, but turning it can reorder everything, so a full sort is
+ * done instead when the camera has turned too far since the last sort, or when
+ * the insertion sort turns out to be moving too many sprites.
+ *
+ * @author Martin Baldwin
+ * @version June 2024
+ */
+public class SpriteSorter {
+    // The camera rotation since the last sort, in degrees, above which the
+    // list is fully sorted instead
+    private static final double FULL_SORT_ROTATION = 10;
+    // The number of moves per sprite that the insertion sort may make before
+    // giving up on a list that is too far out of order
+    private static final int MOVES_PER_SPRITE = 8;
+
+    private Sprite[] sprites = new Sprite[0];
+    private double[] keys = new double[0];
+    private long[] packed = new long[0];
+    private Sprite[] scratch = new Sprite[0];
+    private double[] scratchKeys = new double[0];
+    private double lastRotation = Double.NaN;
+
+    /**
+     * Sort a list of sprites in place by their sort values.
+     *
+     * @param list the sprites to sort
+     * @see Sprite#getSortValue
+     */
+    public void sort(List<Sprite> list) {
+        int n = list.size();
+        if (sprites.length < n) {
+            int capacity = Math.max(n, sprites.length * 2);
+            sprites = new Sprite[capacity];
+            keys = new double[capacity];
+            packed = new long[capacity];
+            scratch = new Sprite[capacity];
+            scratchKeys = new double[capacity];
+        }
+        for (int i = 0; i < n; i++) {
+            sprites[i] = list.get(i);
+            keys[i] = sprites[i].getSortValue();
+        }
+
+        double rotation = Camera.getRotation();
+        double turned = Vector2.normalizeAngle(rotation - lastRotation);
+        turned = Math.min(turned, 360 - turned);
+        // NaN on the first sort, which always sorts fully
+        if (!(turned < FULL_SORT_ROTATION) || !insertionSort(n, (long) n * MOVES_PER_SPRITE)) {
+            fullSort(n);
+        }
+        lastRotation = rotation;
+
+        for (int i = 0; i < n; i++) {
+            list.set(i, sprites[i]);
+        }
+        // Don't keep removed sprites alive
+        Arrays.fill(sprites, 0, n, null);
+    }
+
+    /**
+     * Sort the first n sprites with an insertion sort, unless it takes too
+     * many moves.
+     *
+     * @param n the number of sprites
+     * @param budget the number of moves to give up after
+     * @return whether the sprites were sorted
+     */
+    private boolean insertionSort(int n, long budget) {
+        for (int i = 1; i < n; i++) {
+            double key = keys[i];
+            if (keys[i - 1] <= key) continue;
+            Sprite sprite = sprites[i];
+            int j = i - 1;
+            do {
+                keys[j + 1] = keys[j];
+                sprites[j + 1] = sprites[j];
+                j--;
+            } while (j >= 0 && keys[j] > key);
+            keys[j + 1] = key;
+            sprites[j + 1] = sprite;
+            budget -= i - 1 - j;
+            if (budget < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sort the first n sprites by packing each key, rounded to a float, with
+     * the sprite's index into a long, and sorting those. Sprites with equal
+     * keys keep their order.
+     * <p>
+     * Keys too close together to tell apart as floats are put in order by an
+     * insertion sort afterwards.
+     *
+     * @param n the number of sprites
+     */
+    private void fullSort(int n) {
+        for (int i = 0; i < n; i++) {
+            int bits = Float.floatToIntBits((float) keys[i]);
+            // Flip the other bits of negative floats so that the bits order
+            // the same way as the values do
+            bits ^= (bits >> 31) & 0x7FFFFFFF;
+            packed[i] = ((long) bits << 32) | i;
+        }
+        Arrays.sort(packed, 0, n);
+        System.arraycopy(sprites, 0, scratch, 0, n);
+        System.arraycopy(keys, 0, scratchKeys, 0, n);
+        for (int i = 0; i < n; i++) {
+            int index = (int) packed[i];
+            sprites[i] = scratch[index];
+            keys[i] = scratchKeys[index];
+        }
+        Arrays.fill(scratch, 0, n, null);
+        insertionSort(n, Long.MAX_VALUE);
+    }
+}
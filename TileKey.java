@@ -0,0 +1,66 @@
+/**
+ * Packs a pair of integer world grid coordinates into a single {@code long},
+ * so that tiles can be used as keys without creating {@link Vector2} objects.
+ * <p>
+ * The x coordinate is stored in the high 32 bits and the y coordinate in the
+ * low 32 bits, so every pair of coordinates has a unique key. Chunk and
+ * {@link SpatialGrid} cell keys are packed with this same encoding.
+ *
+ * @author Andrew Wang
+ * @version June 2024
+ */
+public class TileKey {
+    // Don't let anyone instantiate this class
+    private TileKey() {}
+
+    /**
+     * Get the key of the tile at the given grid coordinates.
+     *
+     * @param x the x coordinate of the tile
+     * @param y the y coordinate of the tile
+     * @return the packed key
+     */
+    public static long of(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the key of the tile containing the given grid position.
+     *
+     * @param gridPos the grid position, which may contain decimals
+     * @return the packed key
+     */
+    public static long of(Vector2 gridPos) {
+        return of((int) Math.floor(gridPos.x), (int) Math.floor(gridPos.y));
+    }
+
+    /**
+     * Get the x coordinate of a packed key.
+     *
+     * @param key the packed key
+     * @return the x coordinate of the tile
+     */
+    public static int x(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * Get the y coordinate of a packed key.
+     *
+     * @param key the packed key
+     * @return the y coordinate of the tile
+     */
+    public static int y(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Get the grid position of a packed key.
+     *
+     * @param key the packed key
+     * @return a new Vector2 with the coordinates of the tile
+     */
+    public static Vector2 toVector(long key) {
+        return new Vector2(x(key), y(key));
+    }
+}
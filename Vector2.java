@@ -285,13 +285,14 @@ public class Vector2 {
     /**
      * Get the hash code of this vector.
      * <p>
-     * Note that this is not guaranteed to be unique.
+     * Note that this is not guaranteed to be unique. Adding 0.0 turns -0.0
+     * into 0.0, which {@link #equals} considers equal.
      *
      * @return the hash code of the vector
      */
     @Override
     public int hashCode() {
-        return Double.hashCode(x) * Double.hashCode(y);
+        return 31 * Double.hashCode(x + 0.0) + Double.hashCode(y + 0.0);
     }
 
     /**
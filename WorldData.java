@@ -1,16 +1,22 @@
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Random;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.StringTokenizer;
-import java.util.function.BiConsumer;
 import java.util.List;
-import java.util.HashSet;
+import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A class that stores and handles all the data to be used inside the world.
@@ -19,41 +25,51 @@ import java.util.HashSet;
  * @version May 2024
  */
 public class WorldData {
-    public static class ItemPosPair {
-        public final Item item;
-        public final Vector2 pos;
-
-        public ItemPosPair(Item item, Vector2 pos) {
-            this.item = item;
-            this.pos = pos;
-        }
-    }
-
-    public static class EntityPosPair {
-        public final Entity entity;
-        public final Vector2 pos;
-
-        public EntityPosPair(Entity entity, Vector2 pos) {
-            this.entity = entity;
-            this.pos = pos;
-        }
-    }
-
-    private static Random rand;
+    // Rolls feature chunks off the main thread, one chunk at a time in order
+    private static final ExecutorService generator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "World Generation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Writes save files off the main thread, one save at a time in order
+    private static final ExecutorService saver = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "World Saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // the directory that save files are kept in
+    private static volatile File saveDirectory = new File("saves");
 
     // settings
     private static final int generationRadius = 20;
     private static final int emptyFeatureChance = 10000;
+    // the number of times a chunk is rolled before giving up on it
+    private static final int maxRollAttempts = 3;
+    private static final Feature.Type[] featureTypes = Feature.Type.values();
+    // salts telling apart the random rolls made for the same tile
+    private static final long FEATURE_SALT = 1;
+    private static final long CLUSTER_SALT = 2;
 
     // storage variables
     private long seed;
     private Vector2 playerLocation;
-    private HashMap<Long, FeatureData> modifiedFeatures;
-    private HashMap<Vector2, Feature> surroundings;
-    private HashMap<Long, ItemPosPair> storedItems;
-    private HashMap<Long, EntityPosPair> storedEntities;
+    private Long2ObjectMap<FeatureData> modifiedFeatures;
+    // features surrounding the player, mapped by TileKey
+    private Long2ObjectMap<Feature> surroundings;
+    private HashMap<Long, Chunk> featureChunks;
+    private HashMap<Long, Chunk> clusterChunks;
+    private ConcurrentLinkedQueue<Chunk> loadedChunks;
+    private ArrayDeque<Chunk> unloadedChunks;
+    // stored items and entities with their positions, in grid coordinates
+    private PositionStore<Item> storedItems;
+    private PositionStore<Entity> storedEntities;
+    // persisted features, items, and entities grouped by region, for saving
+    private HashMap<Long, Region> regions;
     private ArrayList<Item> playerHotbar;
-    private HashSet<Vector2> waypoints;
+    // waypoint tiles, as TileKeys
+    private LongHashSet waypoints;
     private double playerHp;
     private double playerArmor;
 
@@ -64,36 +80,257 @@ public class WorldData {
     private long timePlayedActs;
     private ArrayList<Class <? extends Weapon>> weaponsDiscovered;
 
+    // the newest snapshot that has not started being written yet
+    private final AtomicReference<Snapshot> pendingSave = new AtomicReference<>();
+    // the last snapshot that could not be written, retried with the next one;
+    // only used on the saving thread
+    private Snapshot failedSave;
+
     /**
      * Create a WorldData object from a seed.
      * <p>
      * This attempts to load a file using the seed number. If this fails to find
      * such a file, this creates a new WorldData with the specified seed.
+     * <p>
+     * Only the player state and stats are loaded here. The features, items,
+     * and entities saved in each {@link Region} are loaded once the region is
+     * first reached.
      *
      * @param seed the seed to be used when creating the WorldData
      */
     public WorldData(long seed) {
         // Set up default settings
         playerLocation = new Vector2(0, 0);
-        surroundings = new HashMap<Vector2, Feature>();
-        modifiedFeatures = new HashMap<Long, FeatureData>();
-        storedItems = new HashMap<Long, ItemPosPair>();
-        storedEntities = new HashMap<Long, EntityPosPair>();
+        surroundings = new Long2ObjectMap<Feature>();
+        featureChunks = new HashMap<Long, Chunk>();
+        clusterChunks = new HashMap<Long, Chunk>();
+        loadedChunks = new ConcurrentLinkedQueue<Chunk>();
+        unloadedChunks = new ArrayDeque<Chunk>();
+        modifiedFeatures = new Long2ObjectMap<FeatureData>();
+        storedItems = new PositionStore<Item>();
+        storedEntities = new PositionStore<Entity>();
+        regions = new HashMap<Long, Region>();
         playerHotbar = new ArrayList<Item>();
         playerHp = Player.MAX_HP;
         playerArmor = Player.MAX_ARMOR;
-        waypoints = new HashSet<Vector2>();
+        waypoints = new LongHashSet();
         playerDmgDone = 0;
         playerDmgTaken = 0;
         enemiesKilled = 0;
         timePlayedActs = 0;
         weaponsDiscovered = new ArrayList<Class <? extends Weapon>>();
 
-        // Load changes from save file
-        Scanner scf;
+        // Load changes from save file, importing old CSV saves if needed, once
+        // any save of this world still being written is finished
+        waitForSaves();
+        File saveFile = getSaveFile(seed);
+        File csvFile = getCsvSaveFile(seed);
         try {
-            scf = new Scanner(new File("saves/save_" + seed + ".csv"));
+            if (saveFile.exists()) {
+                loadData(saveFile, false);
+                return;
+            } else if (csvFile.exists()) {
+                importCsv(csvFile);
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not load " + seed + ": " + e);
+        }
+        this.seed = seed;
+        // New world, give the player a manual
+        playerHotbar.add(new Manual());
+    }
+
+    /**
+     * Get the directory that save files are kept in.
+     *
+     * @return the save directory, which may not exist
+     */
+    public static File getSaveDirectory() {
+        return saveDirectory;
+    }
+
+    /**
+     * Set the directory that save files are kept in, which is "saves" by
+     * default. This should only be changed while no saves are being written.
+     *
+     * @param directory the new save directory
+     */
+    public static void setSaveDirectory(File directory) {
+        saveDirectory = directory;
+    }
+
+    /**
+     * Get the binary save file of the world with the given seed.
+     *
+     * @param seed the seed of the world
+     * @return the save file, which may not exist
+     */
+    public static File getSaveFile(long seed) {
+        return new File(saveDirectory, "save_" + seed + ".dat");
+    }
+
+    /**
+     * Get the CSV save file that older versions wrote for the world with the
+     * given seed.
+     *
+     * @param seed the seed of the world
+     * @return the CSV save file, which may not exist
+     */
+    public static File getCsvSaveFile(long seed) {
+        return new File(saveDirectory, "save_" + seed + ".csv");
+    }
+
+    /**
+     * Delete all save files of the world with the given seed, once any saves
+     * of it that have already been requested are written.
+     *
+     * @param seed the seed of the world
+     */
+    public static void deleteSave(long seed) {
+        saver.execute(() -> {
+            getSaveFile(seed).delete();
+            getCsvSaveFile(seed).delete();
+            File regionDirectory = Region.getDirectory(seed);
+            File[] regionFiles = regionDirectory.listFiles();
+            if (regionFiles != null) {
+                for (File regionFile : regionFiles) {
+                    regionFile.delete();
+                }
+            }
+            regionDirectory.delete();
+        });
+    }
 
+    /**
+     * Load data from a binary save file or region file. See {@link SaveFile}
+     * for the layout.
+     * <p>
+     * Features, items, and entities found in a main save file were written by
+     * an older version, so their regions are marked dirty to be moved into
+     * region files on the next save. Modified features saved before version 4
+     * are dropped, since the world generator has changed since.
+     *
+     * @param file the file to read
+     * @param region whether the file is a region file
+     * @throws IOException if the file cannot be read
+     */
+    private void loadData(File file, boolean region) throws IOException {
+        try (SaveFile.Reader in = new SaveFile.Reader(file)) {
+            // versions before 3 truncated item and entity positions to integers
+            boolean exact = in.getVersion() >= 3;
+            // features saved before version 4 were rolled by an older world
+            // generator, so they no longer match the features on their tiles
+            boolean sameGeneration = in.getVersion() >= 4;
+            byte tag;
+            while ((tag = in.nextSection()) != SaveFile.END) {
+                switch (tag) {
+                case SaveFile.HEADER:
+                    seed = in.readLong();
+                    playerLocation = new Vector2(in.readInt(), in.readInt());
+                    playerArmor = in.readDouble();
+                    playerHp = in.readDouble();
+                    for (int i = in.readInt(); i > 0; i--) {
+                        playerHotbar.add(Item.NAMES.get(in.readString()).get());
+                    }
+                    break;
+                case SaveFile.STATS:
+                    playerDmgDone = in.readDouble();
+                    playerDmgTaken = in.readDouble();
+                    enemiesKilled = in.readInt();
+                    timePlayedActs = in.readLong();
+                    for (int i = in.readInt(); i > 0; i--) {
+                        addDiscoveredWeapon(in.readString());
+                    }
+                    break;
+                case SaveFile.WAYPOINTS:
+                    for (int i = in.readInt(); i > 0; i--) {
+                        waypoints.add(TileKey.of(in.readInt(), in.readInt()));
+                    }
+                    break;
+                case SaveFile.FEATURES:
+                    // older features are skipped by nextSection
+                    if (!sameGeneration) break;
+                    for (int i = in.readInt(); i > 0; i--) {
+                        addModified(readFeatureData(in), !region);
+                    }
+                    break;
+                case SaveFile.UNPLACED_FEATURES:
+                    // Only written before version 4, skipped by nextSection
+                    break;
+                case SaveFile.ITEMS:
+                    for (int i = in.readInt(); i > 0; i--) {
+                        double itemX = exact ? in.readDouble() : in.readInt();
+                        double itemY = exact ? in.readDouble() : in.readInt();
+                        Item item = Item.NAMES.get(in.readString()).get();
+                        putItem(item, itemX, itemY, !region);
+                    }
+                    break;
+                case SaveFile.ENTITIES:
+                    for (int i = in.readInt(); i > 0; i--) {
+                        double entityX = exact ? in.readDouble() : in.readInt();
+                        double entityY = exact ? in.readDouble() : in.readInt();
+                        String entityType = in.readString();
+                        if (entityType.equals("player")) continue;
+                        Entity entity = Entity.NAMES.get(entityType).get();
+                        putEntity(entity, entityX, entityY, !region);
+                    }
+                    break;
+                default:
+                    // A section from a newer version, skipped by nextSection
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a single modified feature record.
+     *
+     * @param in the reader to read from
+     * @return the feature data that was read
+     * @throws IOException if the file cannot be read
+     */
+    private static FeatureData readFeatureData(SaveFile.Reader in) throws IOException {
+        FeatureData featureData = new FeatureData(in.readLong());
+        featureData.setPosition(new Vector2(in.readInt(), in.readInt()));
+        for (int j = in.readInt(); j > 0; j--) {
+            String key = in.readString();
+            featureData.put(key, in.readBoolean() ? in.readString() : null);
+        }
+        return featureData;
+    }
+
+    /**
+     * Write a single modified feature record.
+     *
+     * @param out the writer to write to
+     * @param featureData the feature data to write
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeFeatureData(SaveFile.Writer out, FeatureData featureData) throws IOException {
+        out.writeLong(featureData.id);
+        out.writeInt((int) featureData.getPosition().x);
+        out.writeInt((int) featureData.getPosition().y);
+        out.writeInt(featureData.size());
+        for (Map.Entry<String, Object> entry : featureData.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeBoolean(entry.getValue() != null);
+            if (entry.getValue() != null) {
+                out.writeString(entry.getValue().toString());
+            }
+        }
+    }
+
+    /**
+     * Import data from a CSV save file written by an older version. The world
+     * is saved in the binary format from then on. Modified features are not
+     * imported, since the world generator has changed since.
+     *
+     * @param file the CSV save file to read
+     * @throws IOException if the file cannot be read
+     */
+    private void importCsv(File file) throws IOException {
+        try (Scanner scf = new Scanner(file)) {
             // get the seed
             this.seed = Long.valueOf(scf.nextLine());
 
@@ -122,148 +359,158 @@ public class WorldData {
             timePlayedActs = Long.valueOf(scf.nextLine());
             st = new StringTokenizer(scf.nextLine(), ",");
             while (st.hasMoreTokens()) {
-                Item item = Item.NAMES.get(st.nextToken()).get();
-                if (item instanceof Weapon) {
-                    weaponsDiscovered.add(((Weapon) item).getClass());
-                }
+                addDiscoveredWeapon(st.nextToken());
             }
 
             while (scf.hasNextLine()) {
-                String check = scf.nextLine();
+                st = new StringTokenizer(scf.nextLine(), ",");
+                if (!st.hasMoreTokens()) continue;
 
-                // get the waypoints
-                if (check.contains("waypoint")) {
-                    st = new StringTokenizer(check, ",");
-                    st.nextToken(); // remove waypoint token
+                // the first token says what the line holds
+                switch (st.nextToken()) {
+                case "waypoint":
                     int waypointX = Integer.valueOf(st.nextToken());
                     int waypointY = Integer.valueOf(st.nextToken());
-                    waypoints.add(new Vector2(waypointX, waypointY));
-                    continue;
-                }
-
-                // get the modified features
-                if (check.contains("feature")) {
-
-                    st = new StringTokenizer(check, ",");
-                    st.nextToken(); // remove feature token
-                    long id = Long.valueOf(st.nextToken());
-                    FeatureData featureData = new FeatureData(id);
-                    while (st.hasMoreTokens()) {
-                        String key = st.nextToken();
-                        String value = st.nextToken();
-                        featureData.put(key, value);
-                    }
-                    modifiedFeatures.put(id, featureData);
-                    continue;
-                }
-
-                // get the stored items
-                if (check.contains("item")) {
-
-                    st = new StringTokenizer(check, ",");
-                    st.nextToken(); // remove item token
+                    waypoints.add(TileKey.of(waypointX, waypointY));
+                    break;
+                case "feature":
+                    // features were rolled by an older world generator, so
+                    // they no longer match the features on their tiles
+                    break;
+                case "item":
                     int itemX = Integer.valueOf(st.nextToken());
                     int itemY = Integer.valueOf(st.nextToken());
-                    String itemType = st.nextToken();
-                    Item item = Item.NAMES.get(itemType).get();
-                    storedItems.put(item.id, new ItemPosPair(item, new Vector2(itemX, itemY)));
-                    continue;
-                }
-
-                // get the stored entities
-                if (check.contains("entity")) {
-
-                    st = new StringTokenizer(check, ",");
-                    st.nextToken(); // remove entity token
+                    Item item = Item.NAMES.get(st.nextToken()).get();
+                    putItem(item, itemX, itemY, true);
+                    break;
+                case "entity":
                     int entityX = Integer.valueOf(st.nextToken());
                     int entityY = Integer.valueOf(st.nextToken());
                     String entityType = st.nextToken();
                     if(entityType.equals("player")) continue;
                     Entity entity = Entity.NAMES.get(entityType).get();
-                    storedEntities.put(entity.id, new EntityPosPair(entity, new Vector2(entityX, entityY)));
-                    continue;
+                    putEntity(entity, entityX, entityY, true);
+                    break;
+                default:
                 }
             }
+        }
+    }
 
-        } catch(FileNotFoundException e) {
-            this.seed = seed;
-            // New world, give the player a manual
-            playerHotbar.add(new Manual());
+    private void addDiscoveredWeapon(String name) {
+        Item item = Item.NAMES.get(name).get();
+        if (item instanceof Weapon) {
+            weaponsDiscovered.add(((Weapon) item).getClass());
         }
     }
 
     /**
      * Generate the world around the player in a fixed radius.
      * <p>
-     * This should only be used when initially generating the world.
+     * This should only be used when initially generating the world, as it
+     * waits for every chunk to be rolled. The chunks are rolled in parallel
+     * across all cores, see {@link #generateWorld(boolean)}. All generated
+     * chunks are queued as loaded, see {@link #pollLoadedChunk()}.
      */
     public void generateWorld() {
-        // clusters
-        for (int i = 0; i < (4 * generationRadius + 1); i++) {
-            for (int j = 0; j < (4 * generationRadius + 1); j++) {
-                int dx = j - 2 * generationRadius;
-                int dy = i - 2 * generationRadius;
-                Vector2 elementPos = playerLocation.add(new Vector2(dx, dy));
-                addCluster(this, elementPos);
-            }
+        generateWorld(true);
+    }
+
+    /**
+     * Generate the world around the player in a fixed radius, either one
+     * chunk at a time on the generation thread, or split across all cores.
+     * <p>
+     * Chunks are rolled independently of each other from the seed, and cluster
+     * centers are still placed and feature chunks still queued one at a time
+     * in the same order, so both ways generate exactly the same world.
+     *
+     * @param parallel whether to roll the chunks in parallel
+     */
+    public void generateWorld(boolean parallel) {
+        if (!parallel) {
+            updateChunks();
+            waitForGenerator();
+            return;
+        }
+        // chunks already waiting on the generation thread are queued first
+        waitForGenerator();
+
+        List<Chunk> newClusterChunks = new ArrayList<>();
+        updateChunks(clusterChunks, 2 * generationRadius,
+                     newClusterChunks::add, this::unloadClusterChunk);
+        newClusterChunks.parallelStream().forEach(chunk -> rollClusterChunk(chunk, seed));
+        newClusterChunks.forEach(this::placeClusterChunk);
+
+        List<Chunk> newFeatureChunks = new ArrayList<>();
+        updateChunks(featureChunks, generationRadius,
+                     newFeatureChunks::add, this::unloadFeatureChunk);
+        List<Runnable> rolls = new ArrayList<>(newFeatureChunks.size());
+        for (Chunk chunk : newFeatureChunks) {
+            rolls.add(prepareFeatureChunk(chunk));
         }
+        rolls.parallelStream().forEach(Runnable::run);
+        loadedChunks.addAll(newFeatureChunks);
+    }
 
-        // features
-        for (int i = 0; i < (2 * generationRadius + 1); i++) {
-            for (int j = 0; j < (2 * generationRadius + 1); j++) {
-                int dx = j - generationRadius;
-                int dy = i - generationRadius;
-                Vector2 elementPos = playerLocation.add(new Vector2(dx, dy));
-                addFeature(this, elementPos);
-            }
+    /**
+     * Wait until every chunk queued on the generation thread so far is rolled.
+     */
+    private static void waitForGenerator() {
+        // The generator runs jobs in order, so this finishes after all of them
+        try {
+            generator.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("Generation thread failed: " + e.getCause());
         }
     }
 
     /**
      * Clear the surroundings and cluster around the player.
+     * <p>
+     * All currently loaded feature chunks are queued as unloaded.
      */
     private void clearSurroundings() {
+        for (Chunk chunk : featureChunks.values()) {
+            unloadFeatureChunk(chunk);
+        }
+        featureChunks.clear();
+        clusterChunks.clear();
         surroundings.clear();
         Cluster.clearClusters();
     }
 
-    private static Feature generateFeature(WorldData data, long id, Vector2 coord, FeatureData featureData) {
-        rand = new Random(id);
-
-        // init spawn rates
-        int[] spawnRates = new int[Feature.Type.length()];
-
-        int i = 0;
-        // spawn rate for the features
-        for (Feature.Type type : Feature.Type.values()) {
-
-            // init object's spawn rate
-            if(i == 0) spawnRates[0] = type.spawnRate;
-            else spawnRates[i] = spawnRates[i - 1] + type.spawnRate;
-
-            List<Vector2> centers = Cluster.getCenter(type.cls);
-            if (centers != null) {
-                Cluster clusterType = Cluster.getFromFeature(type);
-                for (Vector2 center : centers) {
-                    // A multiplier that decreases the spawn rate of the feature
-                    // based on the distance from the center
-                    int closenessMult = Math.max(clusterType.maxRadius - (int) center.distanceTo(coord), 0);
-                    // Apply this multiplier to the defined density of features in
-                    // the cluster
-                    spawnRates[i] += closenessMult * clusterType.density;
-                }
-            }
-
-            i++;
+    /**
+     * Roll the type of feature at a grid coordinate.
+     * <p>
+     * This may run on the generation thread, so it only reads the given copy
+     * of the cluster influence.
+     *
+     * @param hash the random value rolled for the tile, see {@link HashRandom}
+     * @param influence a copy of the cluster influence on the feature's chunk,
+     *                  or null if no cluster reaches it, see
+     *                  {@link Cluster#copyInfluence}
+     * @param tile the index of the feature's tile within its chunk
+     * @return the type of feature rolled, or null if the tile is empty
+     */
+    private static Feature.Type rollFeature(long hash, int[] influence, int tile) {
+        // total spawn rate of the features, including the spawn rate added
+        // by nearby clusters
+        int total = 0;
+        for (Feature.Type type : featureTypes) {
+            total += getSpawnRate(type, influence, tile);
         }
 
         // maximum roll value is increased by the fixed empty weight
-        int roll = rand.nextInt(spawnRates[spawnRates.length-1] + emptyFeatureChance);
+        int roll = HashRandom.nextInt(hash, total + emptyFeatureChance);
 
         // apply spawn rate
-        for (int j = 0; j < Feature.Type.length(); j++) {
-            if (roll < spawnRates[j]) {
-                return Feature.Type.createFeature(j, featureData);
+        int spawnRate = 0;
+        for (Feature.Type type : featureTypes) {
+            spawnRate += getSpawnRate(type, influence, tile);
+            if (roll < spawnRate) {
+                return type;
             }
         }
 
@@ -271,10 +518,29 @@ public class WorldData {
         return null;
     }
 
-    private static Cluster generateCluster(long id) {
-        rand = new Random(id);
+    /**
+     * Get the spawn rate of a feature type on a tile.
+     *
+     * @param type the feature type
+     * @param influence a copy of the cluster influence on the tile's chunk, or null
+     * @param tile the index of the tile within its chunk
+     * @return the spawn rate of the type, including that added by clusters
+     */
+    private static int getSpawnRate(Feature.Type type, int[] influence, int tile) {
+        int cluster = Cluster.indexOf(type);
+        if (influence == null || cluster < 0) return type.spawnRate;
+        return type.spawnRate + influence[tile * Cluster.length() + cluster];
+    }
+
+    /**
+     * Roll the type of cluster centered at a grid coordinate.
+     *
+     * @param hash the random value rolled for the tile, see {@link HashRandom}
+     * @return the cluster rolled, or null if the tile is not a center
+     */
+    private static Cluster generateCluster(long hash) {
         // clusters currently use a probability system
-        int roll = rand.nextInt(5000);
+        int roll = HashRandom.nextInt(hash, 5000);
         int sum = 0;
         for (Cluster cluster : Cluster.values()) {
             sum += cluster.spawnRate;
@@ -286,105 +552,303 @@ public class WorldData {
     }
 
     /**
-     * Update features, freeing up the unloaded terrain and generating new terrain.
-     * @param dx the change in x-value of the grid location of the player location
-     * @param dy the change in y-value of grid location of the player location
-     * @param radius the radius in which the update takes place
-     * @param adder the operation used to add a feature
-     * @param remover the operation used to remove a feature
+     * Load all chunks within the given radius of the player location that are
+     * not yet loaded, and unload all loaded chunks that are no longer within
+     * it.
+     *
+     * @param chunks the loaded chunks of one kind, mapped by key
+     * @param radius the radius around the player location, in grid tiles
+     * @param loader the operation used to load a new chunk
+     * @param unloader the operation used to unload an old chunk
+     * @return whether any chunk was loaded or unloaded
      */
-    private void updateFeatures(int dx, int dy, int radius,
-                                BiConsumer<WorldData, Vector2> adder,
-                                BiConsumer<WorldData, Vector2> remover) {
-        double x = playerLocation.x + dx;
-        double y = playerLocation.y + dy;
-        int topBorder = (int) Math.max(y, playerLocation.y) + radius;
-        int btmBorder = (int) Math.min(y, playerLocation.y) - radius;
-        int leftBorder = (int) Math.min(x, playerLocation.x) - radius;
-        int rightBorder = (int) Math.max(x, playerLocation.x) + radius;
-
-        if (dx != 0) {
-            boolean bigger = dx > 0;
-            double oldBorder = playerLocation.x - radius * (bigger ? 1 : -1);
-            double newBorder = x + radius * (bigger ? 1 : -1);
-
-            // add all elements on new border
-            for (int i = (int) topBorder; i >= (int) btmBorder; i--) {
-
-                // initialize element information
-                Vector2 elementPos = new Vector2(newBorder, i);
-                adder.accept(this, elementPos);
+    private boolean updateChunks(HashMap<Long, Chunk> chunks, int radius,
+                                 Consumer<Chunk> loader, Consumer<Chunk> unloader) {
+        final int minX = Chunk.toChunk(playerLocation.x - radius);
+        final int maxX = Chunk.toChunk(playerLocation.x + radius);
+        final int minY = Chunk.toChunk(playerLocation.y - radius);
+        final int maxY = Chunk.toChunk(playerLocation.y + radius);
+        boolean changed = false;
+
+        // unload chunks that have left the radius
+        Iterator<Chunk> iter = chunks.values().iterator();
+        while (iter.hasNext()) {
+            Chunk chunk = iter.next();
+            if (chunk.x < minX || chunk.x > maxX || chunk.y < minY || chunk.y > maxY) {
+                iter.remove();
+                unloader.accept(chunk);
+                changed = true;
             }
+        }
 
-            // remove all elements on old border
-            for (int i = topBorder; i >= (int) btmBorder; i--) {
-                remover.accept(this, new Vector2(oldBorder, i));
+        // load chunks that have entered the radius
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                long key = Chunk.key(x, y);
+                if (chunks.containsKey(key)) continue;
+                Chunk chunk = new Chunk(x, y);
+                loader.accept(chunk);
+                chunks.put(key, chunk);
+                changed = true;
             }
         }
-        if(dy != 0) {
-            boolean bigger = dy > 0;
-            double oldBorder = playerLocation.y - radius * (bigger ? 1 : -1);
-            double newBorder = y + radius * (bigger ? 1 : -1);
+        return changed;
+    }
 
-            // add all elements on new border
-            for (int i = rightBorder; i >= leftBorder; i--) {
+    /**
+     * Update the loaded cluster and feature chunks around the player location.
+     * <p>
+     * Cluster chunks are loaded in twice the generation radius, so that every
+     * cluster center that can influence a generated feature is always loaded
+     * before the feature is generated.
+     *
+     * @return whether any chunk was loaded or unloaded
+     */
+    private boolean updateChunks() {
+        boolean changed = updateChunks(clusterChunks, 2 * generationRadius,
+                                       this::loadClusterChunk, this::unloadClusterChunk);
+        changed |= updateChunks(featureChunks, generationRadius,
+                                this::loadFeatureChunk, this::unloadFeatureChunk);
+        return changed;
+    }
 
-                // initlize element information
-                Vector2 elementPos = new Vector2(i, newBorder);
-                adder.accept(this, elementPos);
-            }
+    /**
+     * Generate and place all cluster centers within a chunk.
+     *
+     * @param chunk the chunk to load
+     */
+    private void loadClusterChunk(Chunk chunk) {
+        rollClusterChunk(chunk, seed);
+        placeClusterChunk(chunk);
+    }
 
-            // remove all elements on old border
-            for (int i = rightBorder; i >= leftBorder; i--) {
-                remover.accept(this, new Vector2(i, oldBorder));
+    /**
+     * Roll the cluster centers of every tile in a chunk into its clusters.
+     * <p>
+     * This only touches the given chunk, so chunks can be rolled in parallel.
+     *
+     * @param chunk the chunk to roll
+     * @param seed the world seed
+     */
+    private static void rollClusterChunk(Chunk chunk, long seed) {
+        for (int i = 0; i < Chunk.SIZE; i++) {
+            for (int j = 0; j < Chunk.SIZE; j++) {
+                int x = chunk.x * Chunk.SIZE + j;
+                int y = chunk.y * Chunk.SIZE + i;
+                Cluster cluster = generateCluster(HashRandom.hash(seed, TileKey.of(x, y), CLUSTER_SALT));
+                if (cluster != null) {
+                    chunk.getClusters().put(new Vector2(x, y), cluster);
+                }
             }
         }
+    }
+
+    /**
+     * Place the rolled cluster centers of a chunk.
+     *
+     * @param chunk the rolled chunk
+     */
+    private void placeClusterChunk(Chunk chunk) {
+        for (Map.Entry<Vector2, Cluster> entry : chunk.getClusters().entrySet()) {
+            Cluster.addCenter(entry.getValue().cls, entry.getKey());
+        }
+    }
+
+    /**
+     * Remove all cluster centers placed by a chunk.
+     *
+     * @param chunk the chunk to unload
+     */
+    private void unloadClusterChunk(Chunk chunk) {
+        for (Map.Entry<Vector2, Cluster> entry : chunk.getClusters().entrySet()) {
+            Cluster.removeCenter(entry.getValue().cls, entry.getKey());
+        }
+    }
+
+    /**
+     * Queue a chunk to have its features rolled on the generation thread.
+     * <p>
+     * Cluster influence and modified feature data are gathered here on the main
+     * thread, so the generation thread never touches shared world state. Once
+     * rolled, the chunk is queued as loaded, see {@link #pollLoadedChunk()}.
+     *
+     * @param chunk the chunk to load
+     */
+    private void loadFeatureChunk(Chunk chunk) {
+        rollOnGenerator(chunk, prepareFeatureChunk(chunk), 1);
+    }
 
-        // edge case where some terrain is left behind
-        if(x != playerLocation.x && y != playerLocation.y) {
-            leftBorder = (int) x - radius - 1;
-            rightBorder = (int) x + radius + 1;
-            topBorder = (int) y + radius + 1;
-            btmBorder = (int) y - radius - 1;
+    /**
+     * Queue a prepared roll of a chunk on the generation thread.
+     * <p>
+     * If rolling fails, the roll is queued again, up to
+     * {@code maxRollAttempts} times in total. After that the chunk is queued
+     * as loaded without any features, so that it is not left missing.
+     *
+     * @param chunk the chunk to roll
+     * @param roll the operation that rolls the chunk
+     * @param attempt the number of this attempt, starting from 1
+     */
+    private void rollOnGenerator(Chunk chunk, Runnable roll, int attempt) {
+        generator.execute(() -> {
+            try {
+                roll.run();
+            } catch (RuntimeException e) {
+                chunk.getPlacements().clear();
+                if (attempt < maxRollAttempts) {
+                    rollOnGenerator(chunk, roll, attempt + 1);
+                    return;
+                }
+                System.out.println("Could not roll chunk " + chunk.x + "," + chunk.y
+                                   + " after " + attempt + " attempts: " + e);
+            }
+            loadedChunks.add(chunk);
+        });
+    }
 
-            // remove the top and bottom borders
-            for (int i = leftBorder; i <= rightBorder; i++) {
-                remover.accept(this, new Vector2(i, topBorder));
-                remover.accept(this, new Vector2(i, btmBorder));
+    /**
+     * Gather what is needed to roll the features of a chunk, on the main
+     * thread.
+     *
+     * @param chunk the chunk to roll
+     * @return the operation that rolls the chunk, which may run on any thread
+     */
+    private Runnable prepareFeatureChunk(Chunk chunk) {
+        // a chunk lies within a single region, whose saved data is loaded the
+        // first time any of its chunks are
+        getRegion(new Vector2(chunk.x * Chunk.SIZE, chunk.y * Chunk.SIZE));
+        final int[] influence = Cluster.copyInfluence(chunk.x, chunk.y);
+        final Long2ObjectMap<FeatureData> modified = new Long2ObjectMap<>();
+        for (int i = 0; i < Chunk.SIZE; i++) {
+            for (int j = 0; j < Chunk.SIZE; j++) {
+                Vector2 coord = new Vector2(chunk.x * Chunk.SIZE + j, chunk.y * Chunk.SIZE + i);
+                long localID = seed + coord.getSzudzikValue();
+                FeatureData featureData = modifiedFeatures.get(localID);
+                if (featureData != null) {
+                    modified.put(localID, featureData);
+                }
             }
+        }
+        return () -> rollFeatureChunk(chunk, seed, influence, modified);
+    }
 
-            // remove the left and right borders
-            for (int i = btmBorder; i <= topBorder; i++) {
-                remover.accept(this, new Vector2(leftBorder, i));
-                remover.accept(this, new Vector2(rightBorder, i));
+    /**
+     * Roll the features of every tile in a chunk into its placements.
+     *
+     * @param chunk the chunk to roll
+     * @param seed the world seed
+     * @param influence a copy of the cluster influence on the chunk, or null
+     * @param modified the modified data of features within the chunk, mapped by id
+     */
+    private static void rollFeatureChunk(Chunk chunk, long seed, int[] influence,
+                                         Long2ObjectMap<FeatureData> modified) {
+        for (int i = 0; i < Chunk.SIZE; i++) {
+            for (int j = 0; j < Chunk.SIZE; j++) {
+                int x = chunk.x * Chunk.SIZE + j;
+                int y = chunk.y * Chunk.SIZE + i;
+                long hash = HashRandom.hash(seed, TileKey.of(x, y), FEATURE_SALT);
+                Feature.Type type = rollFeature(hash, influence, i * Chunk.SIZE + j);
+                if (type == null) continue;
+
+                Vector2 coord = new Vector2(x, y);
+                long localID = seed + coord.getSzudzikValue();
+                // check if feature has modified data
+                FeatureData featureData = modified.get(localID);
+                // Empty feature data if has not been modified
+                if (featureData == null) {
+                    featureData = new FeatureData(localID, coord);
+                }
+                chunk.getPlacements().add(new Chunk.Placement(type, featureData));
             }
         }
     }
 
+    /**
+     * Free all features within a chunk and queue it as unloaded.
+     * <p>
+     * A chunk that is still being rolled was never in the world, and its
+     * result is discarded once it comes back from the generation thread.
+     *
+     * @param chunk the chunk to unload
+     */
+    private void unloadFeatureChunk(Chunk chunk) {
+        if (!chunk.isGenerated()) return;
+        chunk.getFeatures().forEach((key, feature) -> surroundings.remove(key));
+        unloadedChunks.add(chunk);
+    }
+
     /**
      * Update the player location and the surrounding features.
+     * <p>
+     * Chunks that were loaded or unloaded by this update are queued, see
+     * {@link #pollLoadedChunk()} and {@link #pollUnloadedChunk()}.
+     *
      * @param x the new player x-location, in grid coordinate
      * @param y the new player y-location, in grid coordinate
      * @return whether the update affected anything
      */
     public boolean updatePlayerLocation(int x, int y) {
         if(x == playerLocation.x && y == playerLocation.y) return false;
-        updateFeatures(
-            (int) (x - playerLocation.x),
-            (int) (y - playerLocation.y),
-            2 * generationRadius,
-            WorldData::addCluster,
-            WorldData::removeCluster
-        );
-        updateFeatures(
-            (int) (x - playerLocation.x),
-            (int) (y - playerLocation.y),
-            generationRadius,
-            WorldData::addFeature,
-            WorldData::removeFeature
-        );
         playerLocation = new Vector2(x, y);
-        return true;
+        return updateChunks();
+    }
+
+    /**
+     * Take the next chunk that has been rolled by the generation thread, and
+     * create its features so that it can be added to the world.
+     * <p>
+     * Chunks that were unloaded while being rolled are skipped.
+     *
+     * @return the next loaded chunk, or null if there are none ready
+     */
+    public Chunk pollLoadedChunk() {
+        Chunk chunk;
+        while ((chunk = loadedChunks.poll()) != null) {
+            if (featureChunks.get(chunk.key()) != chunk) continue;
+            for (Chunk.Placement placement : chunk.getPlacements()) {
+                Feature feature = addFeature(this, placement);
+                if (feature != null) {
+                    long key = TileKey.of(placement.data.getPosition());
+                    chunk.getFeatures().put(key, feature);
+                    surroundings.put(key, feature);
+                }
+            }
+            chunk.markGenerated();
+            return chunk;
+        }
+        return null;
+    }
+
+    /**
+     * Take the next chunk whose features have been freed but not yet removed
+     * from the world.
+     *
+     * @return the next unloaded chunk, or null if there are none
+     */
+    public Chunk pollUnloadedChunk() {
+        return unloadedChunks.poll();
+    }
+
+    /**
+     * Check if the chunk containing the given grid position is loaded.
+     *
+     * @param gridPos the grid position, which may contain decimals
+     * @return whether the chunk containing the position is loaded
+     */
+    public boolean isLoaded(Vector2 gridPos) {
+        return isLoaded(gridPos.x, gridPos.y);
+    }
+
+    /**
+     * Check if the chunk containing the given grid position is loaded.
+     *
+     * @param x the x grid coordinate, which may contain decimals
+     * @param y the y grid coordinate, which may contain decimals
+     * @return whether the chunk containing the position is loaded
+     */
+    public boolean isLoaded(double x, double y) {
+        Chunk chunk = featureChunks.get(Chunk.key(Chunk.toChunk(x), Chunk.toChunk(y)));
+        return chunk != null && chunk.isGenerated();
     }
 
     /**
@@ -411,58 +875,33 @@ public class WorldData {
     }
 
     /**
-     * Add a feature at the specified coordinate and apply necessary
-     * modifications.
-     *
-     * @param data the WorldData object on which to operate
-     * @param coord the coordinate of the {@link Feature} to add
-     */
-    private static void addFeature(WorldData data, Vector2 coord) {
-        long localID = data.getSeed() + coord.getSzudzikValue();
-
-        HashMap<Vector2, Feature> surroundings = data.getSurroundings();
-
-        // check if feature has modified data
-        FeatureData featureData = data.getModifiedFeatures().get(localID);
-        // Empty feature data if has not been modified
-        if (featureData == null) {
-            featureData = new FeatureData(localID, coord);
-        }
-        featureData.setPosition(coord);
-
-        // generate feature and add it to the list
-        Feature feature = generateFeature(data, localID, coord, featureData);
-        if (feature != null) {
-            surroundings.put(coord, feature);
-
-            if (coord.magnitude() < 32) return;
-            // if it's an enemy spawner
-            if (feature instanceof EnemySpawner && !featureData.containsKey("spawnedEnemies")) {
-                EnemySpawner es = (EnemySpawner) feature;
-                feature.modify("spawnedEnemies", null);
-                data.addModified(featureData);
-                int spawnNum = es.getSpawnCount();
-                for (int i = 0; i < spawnNum; i++) {
-                    Entity e = es.getSpawner().get();
-                    e.setWorldRotation(i * 360 / spawnNum);
-                    data.storeEntity(coord.add(new Vector2(i * 360 / spawnNum).multiply(2)), e);
-                }
-            }
-        }
-    }
-
-    /**
-     * Add an invisible cluster marker at the specified coordinate.
+     * Create a rolled feature and apply necessary modifications.
      *
      * @param data the WorldData object on which to operate
-     * @param coord the coordinate of the {@link Cluster} to add
+     * @param placement the rolled type and data of the {@link Feature} to add
+     * @return the created feature, or null if it has been removed
      */
-    private static void addCluster(WorldData data, Vector2 coord) {
-        long localID = data.getSeed() + coord.getSzudzikValue();
-        Cluster toBeAdded = generateCluster(localID);
-        if(toBeAdded != null) {
-            Cluster.addCenter(toBeAdded.cls, coord);
+    private static Feature addFeature(WorldData data, Chunk.Placement placement) {
+        FeatureData featureData = placement.data;
+        Vector2 coord = featureData.getPosition();
+
+        // create feature
+        Feature feature = Feature.Type.createFeature(placement.type.ordinal(), featureData);
+        if (feature == null || coord.magnitude() < 32) return feature;
+
+        // if it's an enemy spawner
+        if (feature instanceof EnemySpawner && !featureData.containsKey("spawnedEnemies")) {
+            EnemySpawner es = (EnemySpawner) feature;
+            feature.modify("spawnedEnemies", null);
+            data.addModified(featureData);
+            int spawnNum = es.getSpawnCount();
+            for (int i = 0; i < spawnNum; i++) {
+                Entity e = es.getSpawner().get();
+                e.setWorldRotation(i * 360 / spawnNum);
+                data.storeEntity(coord.add(new Vector2(i * 360 / spawnNum).multiply(2)), e);
+            }
         }
+        return feature;
     }
 
     /**
@@ -474,11 +913,12 @@ public class WorldData {
      * @param coord the coordinate of the {@link Feature} to remove
      */
     public void removeFeature(Vector2 coord) {
-        surroundings.remove(coord);
-    }
-
-    private void removeCluster(Vector2 coord) {
-        Cluster.removeCenter(coord);
+        long key = TileKey.of(coord);
+        surroundings.remove(key);
+        Chunk chunk = featureChunks.get(Chunk.keyOf(coord));
+        if (chunk != null) {
+            chunk.getFeatures().remove(key);
+        }
     }
 
     /**
@@ -487,14 +927,81 @@ public class WorldData {
      * @param featureData the data of the feature to add
      */
     public void addModified(FeatureData featureData) {
+        addModified(featureData, true);
+    }
+
+    private void addModified(FeatureData featureData, boolean dirty) {
         modifiedFeatures.put(featureData.id, featureData);
+        Region region = getRegion(featureData.getPosition());
+        region.getFeatures().put(featureData.id, featureData);
+        if (dirty) {
+            region.markDirty();
+        }
     }
 
     /**
-     * Get the hashmap that represents elements surrounding the player.
-     * @return the hashmap that represents elements surrounding the player
+     * Get the region containing the given grid position, creating it if it
+     * does not exist yet.
+     *
+     * @param gridPos the grid position, which may contain decimals
+     * @return the region containing the position
+     */
+    private Region getRegion(Vector2 gridPos) {
+        return getRegion(gridPos.x, gridPos.y);
+    }
+
+    /**
+     * Get the region containing the given grid position, creating it if it
+     * does not exist yet.
+     *
+     * @param x the x grid coordinate, which may contain decimals
+     * @param y the y grid coordinate, which may contain decimals
+     * @return the region containing the position
+     */
+    private Region getRegion(double x, double y) {
+        int regionX = Region.toRegion(x);
+        int regionY = Region.toRegion(y);
+        long key = Chunk.key(regionX, regionY);
+        Region region = regions.get(key);
+        if (region == null) {
+            region = new Region(regionX, regionY);
+            // put first, loading the file adds to this region
+            regions.put(key, region);
+            loadRegion(region);
+        }
+        return region;
+    }
+
+    /**
+     * Load the features, items, and entities saved in a region's file, if it
+     * has one.
+     * <p>
+     * A file that cannot be loaded is moved to a backup file next to it, since
+     * the region will be saved over it with only what could be loaded.
+     *
+     * @param region the region to load
      */
-    public HashMap<Vector2, Feature> getSurroundings() {
+    private void loadRegion(Region region) {
+        File regionFile = Region.getFile(seed, region.x, region.y);
+        if (!regionFile.exists()) return;
+        try {
+            loadData(regionFile, true);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not load " + regionFile + ": " + e);
+            File backupFile = new File(regionFile.getPath() + ".bak");
+            try {
+                Files.move(regionFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException moveError) {
+                System.out.println("Could not back up " + regionFile + ": " + moveError);
+            }
+        }
+    }
+
+    /**
+     * Get the map that represents elements surrounding the player.
+     * @return the features surrounding the player, mapped by {@link TileKey}
+     */
+    public Long2ObjectMap<Feature> getSurroundings() {
         return surroundings;
     }
 
@@ -503,7 +1010,7 @@ public class WorldData {
      *
      * @return the modified element IDs
      */
-    public HashMap<Long, FeatureData> getModifiedFeatures() {
+    public Long2ObjectMap<FeatureData> getModifiedFeatures() {
         return modifiedFeatures;
     }
 
@@ -524,7 +1031,22 @@ public class WorldData {
      * @param i the item to be stored
      */
     public void storeItem(Vector2 pos, Item i) {
-        storedItems.put(i.id, new ItemPosPair(i, pos));
+        putItem(i, pos.x, pos.y, true);
+    }
+
+    private void putItem(Item item, double x, double y, boolean dirty) {
+        Region region = getRegion(x, y);
+        int index = storedItems.indexOf(item.id);
+        if (index >= 0) {
+            Region oldRegion = getRegion(storedItems.getX(index), storedItems.getY(index));
+            oldRegion.getItems().remove(item.id);
+            oldRegion.markDirty();
+        }
+        storedItems.put(item.id, item, x, y);
+        region.getItems().add(item.id);
+        if (dirty) {
+            region.markDirty();
+        }
     }
 
     /**
@@ -533,15 +1055,22 @@ public class WorldData {
      * @param id the uuid of the item to be removed
      */
     public void removeItem(long id) {
-        storedItems.remove(id);
+        int index = storedItems.indexOf(id);
+        if (index >= 0) {
+            Region region = getRegion(storedItems.getX(index), storedItems.getY(index));
+            region.getItems().remove(id);
+            region.markDirty();
+            storedItems.remove(id);
+        }
     }
 
     /**
      * Get the stored items within the world.
      *
-     * @return the hashmap containing all stored items
+     * @return the store of all stored items, with their positions in grid
+     *         coordinates
      */
-    public HashMap<Long, ItemPosPair> getStoredItems() {
+    public PositionStore<Item> getStoredItems() {
         return storedItems;
     }
 
@@ -553,7 +1082,30 @@ public class WorldData {
      * @param e the entity to be stored
      */
     public void storeEntity(Vector2 pos, Entity e) {
-        storedEntities.put(e.id, new EntityPosPair(e, pos));
+        putEntity(e, pos.x, pos.y, true);
+    }
+
+    private void putEntity(Entity entity, double x, double y, boolean dirty) {
+        Region region = getRegion(x, y);
+        int index = storedEntities.indexOf(entity.id);
+        if (index >= 0) {
+            double oldX = storedEntities.getX(index);
+            double oldY = storedEntities.getY(index);
+            Region oldRegion = getRegion(oldX, oldY);
+            if (oldRegion != region) {
+                oldRegion.getEntities().remove(entity.id);
+                oldRegion.markDirty();
+            } else if (oldX == x && oldY == y) {
+                // entities are stored every time chunks change, often without
+                // having moved, which changes nothing to save
+                dirty = false;
+            }
+        }
+        storedEntities.put(entity.id, entity, x, y);
+        region.getEntities().add(entity.id);
+        if (dirty) {
+            region.markDirty();
+        }
     }
 
     /**
@@ -562,15 +1114,22 @@ public class WorldData {
      * @param id the uuid of the entity to be removed
      */
     public void removeEntity(long id) {
-        storedEntities.remove(id);
+        int index = storedEntities.indexOf(id);
+        if (index >= 0) {
+            Region region = getRegion(storedEntities.getX(index), storedEntities.getY(index));
+            region.getEntities().remove(id);
+            region.markDirty();
+            storedEntities.remove(id);
+        }
     }
 
     /**
      * Get the stored entities within the world.
      *
-     * @return the hashmap containing all stored entities
+     * @return the store of all stored entities, with their positions in grid
+     *         coordinates
      */
-    public HashMap<Long, EntityPosPair> getStoredEntities() {
+    public PositionStore<Entity> getStoredEntities() {
         return storedEntities;
     }
 
@@ -736,21 +1295,24 @@ public class WorldData {
     }
 
     /**
-     * Get the set of waypoints.
+     * Get the waypoints.
      *
-     * @return the set of waypoints
+     * @return a new list of the waypoints, in grid coordinates
      */
-    public HashSet<Vector2> getWaypoints() {
-        return waypoints;
+    public List<Vector2> getWaypoints() {
+        List<Vector2> result = new ArrayList<>(waypoints.size());
+        waypoints.forEach(key -> result.add(TileKey.toVector(key)));
+        return result;
     }
 
     /**
-     * Add a waypoint to the set of waypoints.
+     * Add a waypoint to the set of waypoints. Waypoints are kept per grid
+     * tile, so this marks the tile containing the given position.
      *
      * @param waypoint the waypoint to be added
      */
     public void addWaypoint(Vector2 waypoint) {
-        waypoints.add(waypoint);
+        waypoints.add(TileKey.of(waypoint));
     }
 
     /**
@@ -759,7 +1321,7 @@ public class WorldData {
      * @param waypoint the waypoint to be removed
      */
     public void removeWaypoint(Vector2 waypoint) {
-        waypoints.remove(waypoint);
+        waypoints.remove(TileKey.of(waypoint));
     }
 
     /**
@@ -769,71 +1331,302 @@ public class WorldData {
      * @return whether the waypoint is in the set of waypoints
      */
     public boolean hasWaypoint(Vector2 waypoint) {
-        return waypoints.contains(waypoint);
+        return waypoints.contains(TileKey.of(waypoint));
     }
 
     /**
-     * Save the data to a csv file called save_{seed}.
+     * Save the data to a binary file called save_{seed}.dat and region files
+     * in the regions_{seed} directory, replacing any CSV save imported from an
+     * older version.
      * <p>
-     * The file contains the seed, the player location, and the modified elements.
+     * The main file contains the seed, the player state and stats, and the
+     * waypoints. Modified features, stored items, and stored entities are
+     * saved in the file of their {@link Region}, and only regions that have
+     * changed since they were last saved are written. See {@link SaveFile} for
+     * the layout.
+     * <p>
+     * Only a snapshot of the data is taken on the calling thread. The files are
+     * written on a background thread, each to a temporary file that then
+     * replaces it, so a file is never left half written. If this is called
+     * again before the previous snapshot has started writing, the snapshots
+     * are merged and only the newest data is written. If writing fails, the
+     * regions of the failed snapshot are written again with the next save.
      */
     public void saveData() {
-        PrintWriter fileOutput;
+        Snapshot snapshot = new Snapshot(this);
+        while (true) {
+            Snapshot previous = pendingSave.get();
+            // keep regions that only changed in the previous snapshot
+            snapshot.merge(previous);
+            if (pendingSave.compareAndSet(previous, snapshot)) {
+                if (previous == null) {
+                    saver.execute(this::writePendingSave);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write the newest snapshot waiting to be saved, if any. This runs on the
+     * saving thread.
+     */
+    private void writePendingSave() {
+        Snapshot snapshot = pendingSave.getAndSet(null);
+        if (snapshot == null) return;
+        // the regions of a failed save were marked clean, so write them again
+        // unless this snapshot has newer copies of them
+        snapshot.merge(failedSave);
+        failedSave = null;
         try {
-            fileOutput = new PrintWriter(new FileWriter("saves/save_"+seed+".csv"));
-        } catch (IOException e) {
+            Region.getDirectory(snapshot.seed).mkdirs();
+            for (RegionSnapshot region : snapshot.regions.values()) {
+                File regionFile = Region.getFile(snapshot.seed, region.x, region.y);
+                if (region.isEmpty()) {
+                    regionFile.delete();
+                } else {
+                    File tempFile = new File(regionFile.getPath() + ".tmp");
+                    region.write(tempFile);
+                    replace(tempFile, regionFile);
+                }
+            }
+            File saveFile = getSaveFile(snapshot.seed);
+            File tempFile = new File(saveFile.getPath() + ".tmp");
+            snapshot.write(tempFile);
+            replace(tempFile, saveFile);
+        } catch (IOException | RuntimeException e) {
             System.out.println(e);
+            failedSave = snapshot;
             return;
         }
-        // seed
-        fileOutput.println(seed);
-        // player location
-        fileOutput.println((int) (playerLocation.x) + "," + (int) playerLocation.y);
-        // player armor and hp
-        fileOutput.println(playerArmor + "," + playerHp);
-        // player hotbar
-        StringBuilder sb = new StringBuilder();
-        sb.append("hotbar,");
-        for (Item i : playerHotbar) {
-            sb.append(i + ",");
-        }
-        sb.deleteCharAt(sb.length() - 1);
-        fileOutput.println(sb);
-        // player stats
-        fileOutput.println(playerDmgDone);
-        fileOutput.println(playerDmgTaken);
-        fileOutput.println(enemiesKilled);
-        fileOutput.println(timePlayedActs);
-        sb = new StringBuilder();
-        for (Class<? extends Weapon> c : weaponsDiscovered) {
-            sb.append(c.getName().toLowerCase() + ",");
-        }
-        if (sb.length() > 0)
-            sb.deleteCharAt(sb.length() - 1);
-        fileOutput.println(sb);
-        // waypoints
-        for (Vector2 waypoint : waypoints) {
-            fileOutput.println("waypoint," + (int) waypoint.x + "," + (int) waypoint.y);
-        }
-        // modified features
-        for (FeatureData featureData : modifiedFeatures.values()) {
-            fileOutput.print("feature,");
-            fileOutput.println(featureData.toString());
-        }
-        // stored items
-        for (Long id : storedItems.keySet()) {
-            Item i = storedItems.get(id).item;
-            Vector2 pos = storedItems.get(id).pos;
-            fileOutput.print("item,");
-            fileOutput.println((int)pos.x + "," + (int)pos.y + "," + i.toString());
-        }
-        // stored entities
-        for(Long id : storedEntities.keySet()) {
-            Entity e = storedEntities.get(id).entity;
-            Vector2 pos = storedEntities.get(id).pos;
-            fileOutput.print("entity,");
-            fileOutput.println((int)pos.x + "," + (int)pos.y + "," + e.toString());
-        }
-        fileOutput.close();
+        getCsvSaveFile(snapshot.seed).delete();
+    }
+
+    /**
+     * Replace a file with a newly written temporary file, atomically where the
+     * file system allows it.
+     *
+     * @param tempFile the newly written file
+     * @param file the file to replace
+     * @throws IOException if the file cannot be replaced
+     */
+    private static void replace(File tempFile, File file) throws IOException {
+        try {
+            Files.move(tempFile.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait until every save that has been requested so far is written.
+     */
+    public static void waitForSaves() {
+        // The saver runs jobs in order, so this finishes after all of them
+        try {
+            saver.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("Saving thread failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * A copy of everything in a dirty region, taken on the game thread so that
+     * it can be written on the saving thread.
+     *
+     * @author Lucas Fu
+     * @version June 2024
+     */
+    private static class RegionSnapshot {
+        public final int x;
+        public final int y;
+        private final List<FeatureData> features;
+        private final double[] itemXs;
+        private final double[] itemYs;
+        private final String[] itemNames;
+        private final double[] entityXs;
+        private final double[] entityYs;
+        private final String[] entityNames;
+
+        public RegionSnapshot(Region region, WorldData data) {
+            x = region.x;
+            y = region.y;
+            // FeatureData is modified in place, so each one is copied
+            features = new ArrayList<>(region.getFeatures().size());
+            for (FeatureData featureData : region.getFeatures().values()) {
+                FeatureData copy = new FeatureData(featureData.id, featureData.getPosition());
+                copy.putAll(featureData);
+                features.add(copy);
+            }
+            // only the exact position and name of items and entities are saved
+            long[] itemIds = region.getItems().toArray();
+            itemXs = new double[itemIds.length];
+            itemYs = new double[itemIds.length];
+            itemNames = new String[itemIds.length];
+            for (int i = 0; i < itemIds.length; i++) {
+                int index = data.storedItems.indexOf(itemIds[i]);
+                itemXs[i] = data.storedItems.getX(index);
+                itemYs[i] = data.storedItems.getY(index);
+                itemNames[i] = data.storedItems.get(index).toString();
+            }
+            long[] entityIds = region.getEntities().toArray();
+            entityXs = new double[entityIds.length];
+            entityYs = new double[entityIds.length];
+            entityNames = new String[entityIds.length];
+            for (int i = 0; i < entityIds.length; i++) {
+                int index = data.storedEntities.indexOf(entityIds[i]);
+                entityXs[i] = data.storedEntities.getX(index);
+                entityYs[i] = data.storedEntities.getY(index);
+                entityNames[i] = data.storedEntities.get(index).toString();
+            }
+        }
+
+        public boolean isEmpty() {
+            return features.isEmpty() && itemNames.length == 0 && entityNames.length == 0;
+        }
+
+        /**
+         * Write this snapshot to a region file.
+         *
+         * @param file the file to write
+         * @throws IOException if the file cannot be written
+         */
+        public void write(File file) throws IOException {
+            try (SaveFile.Writer out = new SaveFile.Writer(file)) {
+                // modified features
+                out.beginSection(SaveFile.FEATURES);
+                out.writeInt(features.size());
+                for (FeatureData featureData : features) {
+                    writeFeatureData(out, featureData);
+                }
+                // stored items
+                out.beginSection(SaveFile.ITEMS);
+                out.writeInt(itemNames.length);
+                for (int i = 0; i < itemNames.length; i++) {
+                    out.writeDouble(itemXs[i]);
+                    out.writeDouble(itemYs[i]);
+                    out.writeString(itemNames[i]);
+                }
+                // stored entities
+                out.beginSection(SaveFile.ENTITIES);
+                out.writeInt(entityNames.length);
+                for (int i = 0; i < entityNames.length; i++) {
+                    out.writeDouble(entityXs[i]);
+                    out.writeDouble(entityYs[i]);
+                    out.writeString(entityNames[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * A copy of the main save data and every dirty region, taken on the game
+     * thread so that it can be written on the saving thread while the game
+     * keeps changing. Taking a snapshot marks the regions as clean, so a
+     * snapshot that fails to be written is kept and merged into the next one.
+     *
+     * @author Lucas Fu
+     * @version June 2024
+     */
+    private static class Snapshot {
+        public final long seed;
+        private final int playerX;
+        private final int playerY;
+        private final double playerArmor;
+        private final double playerHp;
+        private final List<String> hotbar;
+        private final double playerDmgDone;
+        private final double playerDmgTaken;
+        private final int enemiesKilled;
+        private final long timePlayedActs;
+        private final List<String> weaponsDiscovered;
+        // Vector2 objects are immutable
+        private final List<Vector2> waypoints;
+        public final Map<Long, RegionSnapshot> regions;
+
+        public Snapshot(WorldData data) {
+            seed = data.seed;
+            playerX = (int) data.playerLocation.x;
+            playerY = (int) data.playerLocation.y;
+            playerArmor = data.playerArmor;
+            playerHp = data.playerHp;
+            hotbar = new ArrayList<>();
+            for (Item i : data.playerHotbar) {
+                hotbar.add(i.toString());
+            }
+            playerDmgDone = data.playerDmgDone;
+            playerDmgTaken = data.playerDmgTaken;
+            enemiesKilled = data.enemiesKilled;
+            timePlayedActs = data.timePlayedActs;
+            weaponsDiscovered = new ArrayList<>();
+            for (Class<? extends Weapon> c : data.weaponsDiscovered) {
+                weaponsDiscovered.add(c.getName().toLowerCase());
+            }
+            waypoints = data.getWaypoints();
+            regions = new HashMap<>();
+            for (Region region : data.regions.values()) {
+                if (!region.isDirty()) continue;
+                regions.put(region.key(), new RegionSnapshot(region, data));
+                region.markClean();
+            }
+        }
+
+        /**
+         * Take the regions of an older snapshot that has not been written,
+         * unless this snapshot has newer copies of them.
+         *
+         * @param older the older snapshot, or null
+         */
+        public void merge(Snapshot older) {
+            if (older == null) return;
+            for (Map.Entry<Long, RegionSnapshot> entry : older.regions.entrySet()) {
+                regions.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * Write the main data of this snapshot to a binary save file.
+         *
+         * @param file the file to write
+         * @throws IOException if the file cannot be written
+         */
+        public void write(File file) throws IOException {
+            try (SaveFile.Writer out = new SaveFile.Writer(file)) {
+                // seed, player location, armor, hp, and hotbar
+                out.beginSection(SaveFile.HEADER);
+                out.writeLong(seed);
+                out.writeInt(playerX);
+                out.writeInt(playerY);
+                out.writeDouble(playerArmor);
+                out.writeDouble(playerHp);
+                out.writeInt(hotbar.size());
+                for (String item : hotbar) {
+                    out.writeString(item);
+                }
+                // player stats
+                out.beginSection(SaveFile.STATS);
+                out.writeDouble(playerDmgDone);
+                out.writeDouble(playerDmgTaken);
+                out.writeInt(enemiesKilled);
+                out.writeLong(timePlayedActs);
+                out.writeInt(weaponsDiscovered.size());
+                for (String weapon : weaponsDiscovered) {
+                    out.writeString(weapon);
+                }
+                // waypoints
+                out.beginSection(SaveFile.WAYPOINTS);
+                out.writeInt(waypoints.size());
+                for (Vector2 waypoint : waypoints) {
+                    out.writeInt((int) waypoint.x);
+                    out.writeInt((int) waypoint.y);
+                }
+            }
+        }
     }
 }
@@ -38,8 +38,8 @@ public class WorldMap extends PixelWorld {
         // define variables
         int genRad = worldData.getGenerationRadius() - 4;
         Vector2 playerPos = worldData.getPlayerLocation();
-        HashMap<Vector2, Feature> surroundings = worldData.getSurroundings();
-        HashMap<Long, WorldData.ItemPosPair> items = worldData.getStoredItems();
+        Long2ObjectMap<Feature> surroundings = worldData.getSurroundings();
+        PositionStore<Item> items = worldData.getStoredItems();
 
         // update instance variables
         initialWorld = oldWorld;
@@ -48,18 +48,17 @@ public class WorldMap extends PixelWorld {
         entityMap = new Color[2 * genRad + 1][2 * genRad + 1];
 
         // fetch features
-        for (Vector2 v : surroundings.keySet()) {
-            if(surroundings.get(v) == null) continue;
-            Feature f = surroundings.get(v);
+        surroundings.forEach((key, f) -> {
+            Vector2 v = TileKey.toVector(key);
             v = v.subtract(playerPos);
             v = v.add(new Vector2(genRad, genRad));
             if(v.y > -1 && v.y < map.length && v.x > -1 && v.x < map[0].length)
                 map[(int)v.y][(int)v.x] = colors.get(f.getClass());
-        }
+        });
 
         // put items
-        for (long id : items.keySet()) {
-            Vector2 v = items.get(id).pos;
+        for (int i = 0; i < items.size(); i++) {
+            Vector2 v = new Vector2(items.getX(i), items.getY(i));
             v = v.subtract(playerPos);
             v = v.add(new Vector2(genRad, genRad));
             if (v.y > -1 && v.y < itemMap.length && v.x > -1 && v.x < itemMap[0].length)
@@ -7,6 +7,10 @@ import greenfoot.*;
  * @version May 2024
  */
 public abstract class WorldSprite extends TransformableSprite implements WorldObject {
+    private double worldX;
+    private double worldY;
+    private double worldZ;
+    // The world position as a vector, created on request, or null if outdated
     private Vector3 worldPos;
     private double worldRotation;
 
@@ -16,7 +20,6 @@ public abstract class WorldSprite extends TransformableSprite implements WorldOb
 
     public WorldSprite(Layer layer) {
         super(layer);
-        worldPos = new Vector3();
     }
 
     /**
@@ -31,7 +34,13 @@ public abstract class WorldSprite extends TransformableSprite implements WorldOb
      */
     @Override
     public void setWorldPos(double x, double y, double z) {
-        worldPos = new Vector3(x, y, z);
+        worldX = x;
+        worldY = y;
+        worldZ = z;
+        worldPos = null;
+        if (getWorld() != null) {
+            getWorld().updateSpatialIndex(this);
+        }
     }
 
     /**
@@ -44,6 +53,7 @@ public abstract class WorldSprite extends TransformableSprite implements WorldOb
      */
     @Override
     public void setWorldPos(Vector3 position) {
+        setWorldPos(position.x, position.y, position.z);
         worldPos = position;
     }
 
@@ -57,6 +67,9 @@ public abstract class WorldSprite extends TransformableSprite implements WorldOb
      */
     @Override
     public Vector3 getWorldPos() {
+        if (worldPos == null) {
+            worldPos = new Vector3(worldX, worldY, worldZ);
+        }
         return worldPos;
     }
 
@@ -70,7 +83,7 @@ public abstract class WorldSprite extends TransformableSprite implements WorldOb
      */
     @Override
     public double getWorldX() {
-        return worldPos.x;
+        return worldX;
     }
 
     /**
@@ -83,7 +96,7 @@ public abstract class WorldSprite extends TransformableSprite implements WorldOb
      */
     @Override
     public double getWorldY() {
-        return worldPos.y;
+        return worldY;
     }
 
     /**
@@ -96,7 +109,7 @@ public abstract class WorldSprite extends TransformableSprite implements WorldOb
      */
     @Override
     public double getWorldZ() {
-        return worldPos.z;
+        return worldZ;
     }
 
     /**
@@ -120,17 +133,12 @@ public abstract class WorldSprite extends TransformableSprite implements WorldOb
     }
 
     public void render(GreenfootImage canvas) {
-        double scale = Camera.getZoom();
-        setScale(scale);
-        double offsetX = (worldPos.x - Camera.getX()) * scale;
-        double offsetY = (worldPos.y - Camera.getY()) * scale;
-        double offsetZ = (worldPos.z - Camera.getZ()) * scale;
-        double screenRad = Math.toRadians(-Camera.getRotation());
-        double screenX = canvas.getWidth() / 2 + offsetX * Math.cos(screenRad) - offsetZ * Math.sin(screenRad);
-        double screenY = canvas.getHeight() / 2 + offsetX * Math.sin(screenRad) + offsetZ * Math.cos(screenRad);
-        screenY -= offsetY;
+        CameraTransform camera = Camera.getTransform();
+        setScale(camera.getZoom());
+        double screenX = camera.getScreenX(worldX, worldZ, canvas.getWidth());
+        double screenY = camera.getScreenY(worldX, worldY, worldZ, canvas.getHeight());
         setScreenPos(screenX, screenY);
-        setScreenRotation(worldRotation - Camera.getRotation());
+        setScreenRotation(worldRotation - camera.getRotation());
         super.render(canvas);
     }
 